@@ -1,23 +1,62 @@
 package com.chess.controller;
 
+import com.chess.service.EngineJob;
+import com.chess.service.GameEvents;
 import com.chess.service.GameService;
+import com.chess.service.PgnImporter;
+import com.chess.service.VersionedBoard;
+import com.chess.model.ChessGame;
+import com.chess.model.EngineMove;
+import com.chess.model.ImportSummary;
+import com.chess.model.LegalMove;
+import com.chess.model.MoveBatchResult;
 import com.chess.model.MoveRequest;
+import com.chess.model.PgnGame;
+import com.chess.model.PgnReader;
+import com.chess.model.PgnWriter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 @CrossOrigin(origins = "http://localhost:3000")
 @RestController
 @RequestMapping("/api/game")
 public class GameController {
     private final GameService gameService;
+    private final GameEvents gameEvents;
+    private final PgnImporter pgnImporter;
+    private final int maxBatchMoves;
 
-    public GameController(GameService gameService) {
+    public GameController(GameService gameService, GameEvents gameEvents, PgnImporter pgnImporter,
+            @Value("${chess.games.max-batch-moves:1000}") int maxBatchMoves) {
         this.gameService = gameService;
+        this.gameEvents = gameEvents;
+        this.pgnImporter = pgnImporter;
+        this.maxBatchMoves = maxBatchMoves;
     }
 
     @GetMapping("/board")
@@ -25,12 +64,282 @@ public class GameController {
         return gameService.getBoard();
     }
 
+    @GetMapping(path = "/fen", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> getFen(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return getFen(GameService.DEFAULT_GAME_ID, ifNoneMatch);
+    }
+
+    @GetMapping(path = "/packed", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getPackedBoard(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return getPackedBoard(GameService.DEFAULT_GAME_ID, ifNoneMatch);
+    }
+
+    @GetMapping("/legal-moves")
+    public ResponseEntity<List<LegalMove>> getLegalMoves(@RequestParam(required = false) String from) {
+        return getLegalMoves(GameService.DEFAULT_GAME_ID, from);
+    }
+
     @PostMapping("/move")
     public ResponseEntity<String> makeMove(@RequestBody MoveRequest moveRequest) {
         if (moveRequest.getTo() == null) {
             return ResponseEntity.badRequest().body(moveRequest.getFrom() + moveRequest.getTo());
         }
-        Object move = gameService.makeMove(moveRequest.getFrom(), moveRequest.getTo());
+        return moveResponse(gameService.makeMove(moveRequest.getFrom(), moveRequest.getTo()));
+    }
+
+    @PostMapping("/restart")
+    public ResponseEntity<String> restart() {
+        return ResponseEntity.ok(gameService.restartGame());
+    }
+
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events() {
+        return gameEvents.subscribe(GameService.DEFAULT_GAME_ID);
+    }
+
+    // starts a new game and returns its id
+    @PostMapping
+    public ResponseEntity<String> createGame() {
+        return ResponseEntity.ok(gameService.createGame());
+    }
+
+    // starts a new game from a FEN position and returns its id
+    @PostMapping(path = "/from-fen", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> createGameFromFen(@RequestBody String fen) {
+        try {
+            return ResponseEntity.ok(gameService.createGame(ChessGame.fromFen(fen.trim())));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // starts a new game from the first game in a PGN text, with its moves
+    // already played, and returns its id
+    @PostMapping(path = "/from-pgn", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> createGameFromPgn(@RequestBody String pgn) throws IOException {
+        PgnGame pgnGame;
+        try (PgnReader reader = new PgnReader(new StringReader(pgn))) {
+            pgnGame = reader.next();
+        }
+        if (pgnGame == null) {
+            return ResponseEntity.badRequest().body("No game found.");
+        }
+        try {
+            return ResponseEntity.ok(gameService.createGame(ChessGame.fromPgn(pgnGame)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // checks every game in a PGN archive of any size and reports how many are
+    // legal. The body is streamed, never held in memory as a whole
+    @PostMapping(path = "/import", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<ImportSummary> importGames(InputStream body) throws IOException, InterruptedException {
+        return ResponseEntity.ok(pgnImporter.validate(body));
+    }
+
+    @GetMapping(path = "/{gameId}/pgn", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> getPgn(@PathVariable String gameId) throws IOException {
+        PgnGame pgnGame = gameService.getPgn(gameId);
+        if (pgnGame == null) {
+            return ResponseEntity.notFound().build();
+        }
+        StringWriter pgn = new StringWriter();
+        new PgnWriter(pgn).write(pgnGame);
+        return ResponseEntity.ok(pgn.toString());
+    }
+
+    @GetMapping("/{gameId}/board")
+    public ResponseEntity<String[][]> getBoard(@PathVariable String gameId) {
+        String[][] board = gameService.getBoard(gameId);
+        if (board == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(board);
+    }
+
+    // the board in FEN. The ETag is weak because the move counters in the FEN
+    // are not part of the position key
+    @GetMapping(path = "/{gameId}/fen", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> getFen(@PathVariable String gameId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return versionedResponse(gameService.getFen(gameId, ifNoneMatch), "W/\"", "\"");
+    }
+
+    // the board packed into 35 bytes (see ChessGame.toPackedBoard)
+    @GetMapping(path = "/{gameId}/packed", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getPackedBoard(@PathVariable String gameId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return versionedResponse(gameService.getPackedBoard(gameId, ifNoneMatch), "\"", "\"");
+    }
+
+    // the moves the side to move may make, or only those of the piece on the
+    // square named by from (e.g. E7), so a client can highlight them without
+    // trying moves. Each can be sent back to the move endpoint as it is
+    @GetMapping("/{gameId}/legal-moves")
+    public ResponseEntity<List<LegalMove>> getLegalMoves(@PathVariable String gameId,
+            @RequestParam(required = false) String from) {
+        if (from != null && !isSquare(from)) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<LegalMove> moves = gameService.getLegalMoves(gameId, from);
+        if (moves == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(moves);
+    }
+
+    @PostMapping("/{gameId}/move")
+    public ResponseEntity<String> makeMove(@PathVariable String gameId, @RequestBody MoveRequest moveRequest) {
+        if (moveRequest.getTo() == null) {
+            return ResponseEntity.badRequest().body(moveRequest.getFrom() + moveRequest.getTo());
+        }
+        Object move = gameService.makeMove(gameId, moveRequest.getFrom(), moveRequest.getTo());
+        if (move == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return moveResponse(move);
+    }
+
+    // makes a list of moves in order, for importing or replaying a game, and
+    // answers with the result code of each move tried
+    @PostMapping("/{gameId}/moves")
+    public ResponseEntity<MoveBatchResult> makeMoves(@PathVariable String gameId,
+            @RequestBody List<MoveRequest> moveRequests) {
+        if (moveRequests.size() > maxBatchMoves) {
+            return ResponseEntity.badRequest().build();
+        }
+        for (MoveRequest moveRequest : moveRequests) {
+            if (moveRequest == null || moveRequest.getFrom() == null || moveRequest.getTo() == null) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        MoveBatchResult result = gameService.makeMoves(gameId, moveRequests);
+        if (result == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    // lets the computer make the next move, thinking for up to the given number
+    // of milliseconds on up to the given number of threads (or the configured
+    // defaults). The request thread is released while the engine works.
+    // Answers 429 Too Many Requests if the engine queue is full, 503 Service
+    // Unavailable if the move could not be made in time, and 409 Conflict if
+    // the game moved on or was restarted while the engine was thinking. A
+    // client that hangs up cancels the search, if the server notices
+    @PostMapping("/{gameId}/engine-move")
+    public DeferredResult<ResponseEntity<EngineMove>> makeEngineMove(@PathVariable String gameId,
+            @RequestParam(required = false) Long millis, @RequestParam(required = false) Integer threads) {
+        DeferredResult<ResponseEntity<EngineMove>> response = new DeferredResult<>();
+        if ((millis != null && millis <= 0) || (threads != null && threads <= 0)) {
+            response.setResult(ResponseEntity.badRequest().build());
+            return response;
+        }
+        EngineJob<EngineMove> job;
+        try {
+            job = gameService.requestEngineMove(gameId, millis == null ? null : Duration.ofMillis(millis), threads);
+        } catch (RejectedExecutionException e) {
+            response.setResult(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1").build());
+            return response;
+        }
+        if (job == null) {
+            response.setResult(ResponseEntity.notFound().build());
+            return response;
+        }
+
+        DeferredResult<ResponseEntity<EngineMove>> timed = new DeferredResult<>(job.getTimeoutMillis());
+        timed.onTimeout(() -> {
+            job.cancel(true);
+            timed.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        });
+        timed.onError(error -> job.cancel(true));
+        job.whenComplete((move, error) -> timed.setResult(engineMoveResponse(move, error)));
+        return timed;
+    }
+
+    // streams the game's moves as server-sent events named after what the move
+    // did (move, check, checkmate, stalemate, castle, draw or restart)
+    @GetMapping(path = "/{gameId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(@PathVariable String gameId) {
+        if (!gameService.hasGame(gameId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(gameEvents.subscribe(gameId));
+    }
+
+    @PostMapping("/{gameId}/restart")
+    public ResponseEntity<String> restart(@PathVariable String gameId) {
+        String restarted = gameService.restartGame(gameId);
+        if (restarted == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(restarted);
+    }
+
+    @DeleteMapping("/{gameId}")
+    public ResponseEntity<String> endGame(@PathVariable String gameId) {
+        if (!gameService.endGame(gameId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok("Game ended.");
+    }
+
+    // answers 304 Not Modified when the client already has the board, tagging
+    // the response with the position's version either way
+    private static <T> ResponseEntity<T> versionedResponse(VersionedBoard<T> board, String prefix, String suffix) {
+        if (board == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String eTag = prefix + board.getVersion() + suffix;
+        if (board.isNotModified()) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).body(board.getBoard());
+    }
+
+    // cancels the engine moves queued or running for a game, for clients that
+    // give up waiting
+    @DeleteMapping("/{gameId}/engine-move")
+    public ResponseEntity<String> cancelEngineMoves(@PathVariable String gameId) {
+        if (!gameService.cancelEngineMoves(gameId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok("Engine moves cancelled.");
+    }
+
+    private static ResponseEntity<EngineMove> engineMoveResponse(EngineMove move, Throwable error) {
+        if (error instanceof CancellationException) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        if (error instanceof TimeoutException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        if (error != null) {
+            return ResponseEntity.internalServerError().build();
+        }
+        if (move == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (move.getResult() == -6) {
+            return ResponseEntity.badRequest().body(move);
+        }
+        if (move.getFrom() == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(move);
+        }
+        return ResponseEntity.ok(move);
+    }
+
+    private static boolean isSquare(String name) {
+        return name.length() == 2 && name.charAt(0) >= 'A' && name.charAt(0) <= 'H' && name.charAt(1) >= '1'
+                && name.charAt(1) <= '8';
+    }
+
+    // turns the result code of a move into the response sent to the player
+    private ResponseEntity<String> moveResponse(Object move) {
         if (move.equals(-6)) {
             return ResponseEntity.badRequest().body("Game is over. Restart to play again.");
         }
@@ -75,14 +384,15 @@ public class GameController {
         if (move.equals(8)) {
             return ResponseEntity.ok("Stalemate. Game has ended in a draw.");
         }
+        if (move.equals(9)) {
+            return ResponseEntity.ok("Threefold repetition. Game has ended in a draw.");
+        }
+        if (move.equals(10)) {
+            return ResponseEntity.ok("Fifty moves without a capture or pawn move. Game has ended in a draw.");
+        }
 
         return ResponseEntity.badRequest().body("An error has occurred. Please restart the game.");
 
     }
 
-    @PostMapping("/restart")
-    public ResponseEntity<String> restart() {
-        return ResponseEntity.ok(gameService.restartGame());
-    }
-
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package com.chess.engine;
+
+import com.chess.model.BitboardPosition;
+import com.chess.model.Fen;
+import com.chess.model.PackedMove;
+import com.chess.model.PgnGame;
+import com.chess.model.PgnReader;
+import com.chess.model.San;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// makes a Polyglot opening book from games: every move played in the first
+// plies of a game is weighted by how the game went for the side that played it
+// (2 for a win, 1 for a draw or an unknown result, nothing for a loss), and the
+// weights of a move are added up over all the games it was played in
+public final class BookBuilder {
+    private static final int MAX_WEIGHT = 0xFFFF;
+
+    private final PolyglotHash hash;
+    private final int maxPlies;
+    private final Map<Long, Map<Integer, Integer>> weights; // key to book move to weight
+
+    public BookBuilder(PolyglotHash hash, int maxPlies) {
+        this.hash = hash;
+        this.maxPlies = maxPlies;
+        this.weights = new HashMap<>();
+    }
+
+    // adds the opening of a game; throws an IllegalArgumentException if one of
+    // its moves is not legal, in which case none of it is added
+    public void add(PgnGame game) {
+        BitboardPosition position = new BitboardPosition();
+        Fen.load(game.getStartFen(), position);
+        List<String> moves = game.getMoves();
+        int plies = Math.min(maxPlies, moves.size());
+        long[] keys = new long[plies];
+        int[] bookMoves = new int[plies];
+        int[] colours = new int[plies];
+        for (int i = 0; i < plies; i++) {
+            int move = San.parse(position, moves.get(i));
+            keys[i] = hash.key(position);
+            bookMoves[i] = toBookMove(move);
+            colours[i] = position.getSideToMove();
+            position.makeMove(move);
+        }
+
+        for (int i = 0; i < plies; i++) {
+            int weight = weight(game.getResult(), colours[i]);
+            if (weight > 0) {
+                weights.computeIfAbsent(keys[i], key -> new HashMap<>()).merge(bookMoves[i], weight, Integer::sum);
+            }
+        }
+    }
+
+    // writes the book, sorted by key as Polyglot expects and with each
+    // position's moves from the heaviest down
+    public void write(Path file) throws IOException {
+        List<Long> keys = new ArrayList<>(weights.keySet());
+        keys.sort(Long::compareUnsigned);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (long key : keys) {
+                List<Map.Entry<Integer, Integer>> moves = new ArrayList<>(weights.get(key).entrySet());
+                moves.sort(Map.Entry.<Integer, Integer>comparingByValue().reversed());
+                // weights are only 16 bits, so a position's heaviest move is
+                // scaled to fit and the others with it
+                int heaviest = moves.get(0).getValue();
+                for (Map.Entry<Integer, Integer> move : moves) {
+                    long weight = heaviest <= MAX_WEIGHT ? move.getValue()
+                            : Math.max(1, (long) move.getValue() * MAX_WEIGHT / heaviest);
+                    out.writeLong(key);
+                    out.writeShort(move.getKey());
+                    out.writeShort((int) weight);
+                    out.writeInt(0);
+                }
+            }
+        }
+    }
+
+    // the number of distinct positions added so far
+    public int positions() {
+        return weights.size();
+    }
+
+    // writes a move as Polyglot does: the to and from squares by file and rank,
+    // a promotion piece from 1 (knight) to 4 (queen), and castling as the king
+    // taking its own rook
+    static int toBookMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        if (PackedMove.isCastle(move)) {
+            int rookCol = PackedMove.flags(move) == PackedMove.KING_CASTLE ? 7 : 0;
+            to = BitboardPosition.square(BitboardPosition.rowOf(from), rookCol);
+        }
+        int promotion = PackedMove.isPromotion(move) ? PackedMove.promotion(move) : 0;
+        return BitboardPosition.colOf(to) | PolyglotHash.rank(to) << 3 | BitboardPosition.colOf(from) << 6
+                | PolyglotHash.rank(from) << 9 | promotion << 12;
+    }
+
+    private static int weight(String result, int colour) {
+        String win = colour == BitboardPosition.WHITE ? "1-0" : "0-1";
+        String loss = colour == BitboardPosition.WHITE ? "0-1" : "1-0";
+        if (win.equals(result)) {
+            return 2;
+        }
+        return loss.equals(result) ? 0 : 1;
+    }
+
+    // builds a book from a PGN file: BookBuilder games.pgn book.bin [plies]
+    public static void main(String[] args) throws IOException {
+        Path pgn = Path.of(args[0]);
+        Path book = Path.of(args[1]);
+        int plies = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        BookBuilder builder = new BookBuilder(PolyglotHash.withDefaultKeys(), plies);
+        int games = 0;
+        int skipped = 0;
+        try (PgnReader reader = new PgnReader(Files.newBufferedReader(pgn, StandardCharsets.UTF_8))) {
+            for (PgnGame game = reader.next(); game != null; game = reader.next()) {
+                try {
+                    builder.add(game);
+                    games++;
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                }
+            }
+        }
+        builder.write(book);
+
+        System.out.println("Games: " + games);
+        System.out.println("Skipped: " + skipped);
+        System.out.println("Positions: " + builder.positions());
+    }
+
+} // end BookBuilder
@@ -0,0 +1,100 @@
+package com.chess.engine;
+
+import com.chess.model.BitboardPosition;
+import com.chess.model.PackedMove;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// chooses moves for the computer player. Each call searches its own copy of
+// the position, so any number of searches can run at once; they all share one
+// transposition table.
+//
+// A search may use helper threads (lazy SMP): they search the same position
+// at the same time, half of them a ply ahead, and speed up the main search
+// only through what they leave in the table. Helpers come from a pool shared
+// by every search, so however many searches ask for threads the helpers never
+// take more than maxHelperThreads cores. A search that cannot get all the
+// helpers it asked for makes do with fewer rather than waiting.
+//
+// With an opening book, positions the book knows are answered from it
+// without searching at all
+public final class Engine implements AutoCloseable {
+    private final int maxDepth;
+    private final TranspositionTable table;
+    private final Semaphore helperPermits;
+    private final ExecutorService helpers;
+    private final OpeningBook book;
+
+    public Engine(int maxDepth, int hashSizeMegabytes, int maxHelperThreads) {
+        this(maxDepth, hashSizeMegabytes, maxHelperThreads, null);
+    }
+
+    // book may be null for no opening book
+    public Engine(int maxDepth, int hashSizeMegabytes, int maxHelperThreads, OpeningBook book) {
+        this.book = book;
+        this.maxDepth = Math.min(maxDepth, Search.MAX_PLY - 1);
+        this.table = new TranspositionTable(hashSizeMegabytes);
+        this.helperPermits = new Semaphore(Math.max(0, maxHelperThreads));
+        this.helpers = maxHelperThreads > 0
+                ? Executors.newFixedThreadPool(maxHelperThreads,
+                        Thread.ofPlatform().name("engine-helper-", 1).daemon().factory())
+                : null;
+    }
+
+    // finds the best move for the side to move within the time budget, using
+    // up to the given number of threads including the caller's. previousKeys
+    // are the keys of the game's positions since the last capture or pawn
+    // move, ending with this one, so the engine can see repetitions. Setting
+    // cancelled from another thread ends the search early with the best move
+    // found so far. A move from the book comes back with a depth of 0
+    public SearchResult bestMove(BitboardPosition position, long[] previousKeys, long budgetNanos, int threads,
+            AtomicBoolean cancelled) {
+        if (book != null) {
+            int move = book.pickMove(position);
+            if (move != PackedMove.NONE) {
+                return new SearchResult(move, 0, 0, 0);
+            }
+        }
+        AtomicBoolean abort = new AtomicBoolean();
+        table.newSearch();
+        try {
+            for (int helper = 0; helper < threads - 1 && helperPermits.tryAcquire(); helper++) {
+                startHelper(position, previousKeys, budgetNanos, 1 + (helper & 1), abort, cancelled);
+            }
+            return new Search(position, previousKeys, table, abort, cancelled).run(budgetNanos, 1, maxDepth);
+        } finally {
+            // the helpers' work is only useful while the main search runs
+            abort.set(true);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    private void startHelper(BitboardPosition position, long[] previousKeys, long budgetNanos, int firstDepth,
+            AtomicBoolean abort, AtomicBoolean cancelled) {
+        // the search copies the position now, on the caller's thread, because
+        // the caller may reuse it as soon as the main search is over
+        Search search = new Search(position, previousKeys, table, abort, cancelled);
+        try {
+            helpers.execute(() -> {
+                try {
+                    search.run(budgetNanos, firstDepth, maxDepth);
+                } finally {
+                    helperPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            helperPermits.release();
+        }
+    }
+
+} // end Engine
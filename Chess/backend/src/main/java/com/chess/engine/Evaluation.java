@@ -0,0 +1,115 @@
+package com.chess.engine;
+
+import com.chess.model.BitboardPosition;
+
+// scores a position in centipawns from the side to move's point of view:
+// material plus a bonus or penalty for where each piece stands. The king's
+// table moves from shelter to centralization as the pieces come off
+final class Evaluation {
+    static final int[] PIECE_VALUES = { 100, 320, 330, 500, 900, 0 };
+
+    // piece-square tables for white, indexed by square with a8 first; black
+    // reads them mirrored
+    private static final int[][] TABLES = {
+        { // pawn
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0 },
+        { // knight
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50 },
+        { // bishop
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20 },
+        { // rook
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0 },
+        { // queen
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20 },
+        { // king while there is material on the board
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20 } };
+
+    private static final int[] KING_ENDGAME_TABLE = {
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10, 0, 0, -10, -20, -30,
+        -30, -10, 20, 30, 30, 20, -10, -30,
+        -30, -10, 30, 40, 40, 30, -10, -30,
+        -30, -10, 30, 40, 40, 30, -10, -30,
+        -30, -10, 20, 30, 30, 20, -10, -30,
+        -30, -30, 0, 0, 0, 0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50 };
+
+    // how much each piece counts towards the game phase; 24 is a full board
+    private static final int[] PHASE_WEIGHTS = { 0, 1, 1, 2, 4, 0 };
+    private static final int FULL_PHASE = 24;
+
+    private Evaluation() {
+    }
+
+    static int evaluate(BitboardPosition position) {
+        int score = 0;
+        int phase = 0;
+        int kingMiddlegame = 0;
+        int kingEndgame = 0;
+        for (int colour = BitboardPosition.WHITE; colour <= BitboardPosition.BLACK; colour++) {
+            int sign = colour == BitboardPosition.WHITE ? 1 : -1;
+            int mirror = colour == BitboardPosition.WHITE ? 0 : 56;
+            for (int type = BitboardPosition.PAWN; type < BitboardPosition.KING; type++) {
+                long pieces = position.getPieces(colour, type);
+                int[] table = TABLES[type];
+                phase += PHASE_WEIGHTS[type] * Long.bitCount(pieces);
+                while (pieces != 0) {
+                    int square = Long.numberOfTrailingZeros(pieces) ^ mirror;
+                    pieces &= pieces - 1;
+                    score += sign * (PIECE_VALUES[type] + table[square]);
+                }
+            }
+            int king = position.kingSquare(colour);
+            if (king >= 0) {
+                kingMiddlegame += sign * TABLES[BitboardPosition.KING][king ^ mirror];
+                kingEndgame += sign * KING_ENDGAME_TABLE[king ^ mirror];
+            }
+        }
+        phase = Math.min(phase, FULL_PHASE);
+        score += (kingMiddlegame * phase + kingEndgame * (FULL_PHASE - phase)) / FULL_PHASE;
+        return position.getSideToMove() == BitboardPosition.WHITE ? score : -score;
+    }
+
+} // end Evaluation
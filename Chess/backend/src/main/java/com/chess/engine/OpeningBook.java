@@ -0,0 +1,142 @@
+package com.chess.engine;
+
+import com.chess.model.BitboardPosition;
+import com.chess.model.MoveGenerator;
+import com.chess.model.PackedMove;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+// a Polyglot format opening book: 16 byte big-endian entries of position key,
+// move, weight and learning data, sorted by key. The file is memory-mapped and
+// binary-searched in place, so opening it reads nothing up front and a lookup
+// touches only a few pages and allocates nothing
+public final class OpeningBook {
+    private static final int ENTRY_SIZE = 16;
+
+    private final MappedByteBuffer entries;
+    private final int entryCount;
+    private final PolyglotHash hash;
+    private final ThreadLocal<int[]> moveBuffers;
+
+    private OpeningBook(MappedByteBuffer entries, PolyglotHash hash) {
+        this.entries = entries;
+        this.entryCount = entries.capacity() / ENTRY_SIZE;
+        this.hash = hash;
+        this.moveBuffers = ThreadLocal.withInitial(() -> new int[MoveGenerator.MAX_MOVES]);
+    }
+
+    // maps a book; throws an IOException if the file is not a Polyglot book,
+    // or is keyed with Polyglot's published table and the hash is not
+    public static OpeningBook open(Path file, PolyglotHash hash) throws IOException {
+        OpeningBook book;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % ENTRY_SIZE != 0 || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a Polyglot book: " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            book = new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), hash);
+        }
+        if (!hash.isStandard() && book.contains(PolyglotHash.STANDARD_START_KEY)) {
+            throw new IOException("The book " + file + " is keyed with Polyglot's published random numbers; "
+                    + "give their file as well");
+        }
+        return book;
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    // picks one of the book's moves for the position at random, each in
+    // proportion to its weight; returns PackedMove.NONE if the position is not
+    // in the book. The position is used to generate moves and is left as it was
+    public int pickMove(BitboardPosition position) {
+        long key = hash.key(position);
+        int first = firstEntry(key);
+        if (first >= entryCount || keyAt(first) != key) {
+            return PackedMove.NONE;
+        }
+        int totalWeight = 0;
+        for (int i = first; i < entryCount && keyAt(i) == key; i++) {
+            totalWeight += weightAt(i);
+        }
+
+        int chosen = first;
+        if (totalWeight > 0) {
+            int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+            while (pick >= weightAt(chosen)) {
+                pick -= weightAt(chosen);
+                chosen++;
+            }
+        }
+        return toMove(position, entries.getShort(chosen * ENTRY_SIZE + 8) & 0xFFFF);
+    }
+
+    private boolean contains(long key) {
+        int first = firstEntry(key);
+        return first < entryCount && keyAt(first) == key;
+    }
+
+    // finds the first entry with the key, or where it would go
+    private int firstEntry(long key) {
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(int index) {
+        return entries.getLong(index * ENTRY_SIZE);
+    }
+
+    private int weightAt(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 10) & 0xFFFF;
+    }
+
+    // finds the legal move a Polyglot move stands for. Polyglot writes
+    // castling as the king taking its own rook, and promotions with a piece
+    // number from 1 (knight) to 4 (queen)
+    private int toMove(BitboardPosition position, int bookMove) {
+        int toCol = bookMove & 7;
+        int toRank = (bookMove >>> 3) & 7;
+        int fromCol = (bookMove >>> 6) & 7;
+        int fromRank = (bookMove >>> 9) & 7;
+        int promotion = (bookMove >>> 12) & 7;
+        int from = BitboardPosition.square(7 - fromRank, fromCol);
+        int to = BitboardPosition.square(7 - toRank, toCol);
+
+        int[] moves = moveBuffers.get();
+        int count = MoveGenerator.generateLegal(position, moves);
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (PackedMove.from(move) != from) {
+                continue;
+            }
+            if (PackedMove.isCastle(move)) {
+                int rookCol = PackedMove.flags(move) == PackedMove.KING_CASTLE ? 7 : 0;
+                if (to == BitboardPosition.square(BitboardPosition.rowOf(from), rookCol)) {
+                    return move;
+                }
+            } else if (PackedMove.to(move) == to && (PackedMove.isPromotion(move)
+                    ? PackedMove.promotion(move) == promotion : promotion == 0)) {
+                return move;
+            }
+        }
+        // a move the book has wrong, or a key collision
+        return PackedMove.NONE;
+    }
+
+} // end OpeningBook
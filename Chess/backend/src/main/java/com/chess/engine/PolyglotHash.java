@@ -0,0 +1,120 @@
+package com.chess.engine;
+
+import com.chess.model.Attacks;
+import com.chess.model.BitboardPosition;
+import com.chess.model.Fen;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+// hashes positions the way Polyglot opening books are keyed: 768 piece keys
+// (12 piece kinds by 64 squares), 4 castling keys, 8 en passant file keys and
+// a key for white to move, XORed together. En passant only counts when a pawn
+// of the side to move could actually capture.
+//
+// Books made by other tools are keyed with Polyglot's published table of 781
+// random numbers, which can be read from a file of big-endian longs. Without
+// one, the keys come from a fixed seed, which suits books built by BookBuilder
+// but matches no other book; such a book is recognised by the key of the start
+// position under the published table
+public final class PolyglotHash {
+    static final int RANDOM_COUNT = 781;
+    // the start position's key under Polyglot's published table
+    public static final long STANDARD_START_KEY = 0x463B96181691FC9CL;
+
+    private static final int CASTLING_OFFSET = 768;
+    private static final int EN_PASSANT_OFFSET = 772;
+    private static final int TURN_OFFSET = 780;
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final long[] randoms;
+
+    private PolyglotHash(long[] randoms) {
+        this.randoms = randoms;
+    }
+
+    // the keys generated from the fixed seed
+    public static PolyglotHash withDefaultKeys() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        long[] randoms = new long[RANDOM_COUNT];
+        for (int i = 0; i < RANDOM_COUNT; i++) {
+            randoms[i] = random.nextLong();
+        }
+        return new PolyglotHash(randoms);
+    }
+
+    // reads the 781 keys, in Polyglot's order, from a file of big-endian longs
+    public static PolyglotHash withKeysFrom(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length != RANDOM_COUNT * 8) {
+            throw new IOException("Expected " + RANDOM_COUNT + " keys in " + file);
+        }
+        long[] randoms = new long[RANDOM_COUNT];
+        ByteBuffer.wrap(bytes).asLongBuffer().get(randoms);
+        return new PolyglotHash(randoms);
+    }
+
+    // whether these are Polyglot's published keys, judged by the start
+    // position's key
+    public boolean isStandard() {
+        BitboardPosition start = new BitboardPosition();
+        Fen.load(Fen.START_POSITION, start);
+        return key(start) == STANDARD_START_KEY;
+    }
+
+    public long key(BitboardPosition position) {
+        long key = 0;
+        for (int colour = BitboardPosition.WHITE; colour <= BitboardPosition.BLACK; colour++) {
+            for (int type = BitboardPosition.PAWN; type <= BitboardPosition.KING; type++) {
+                // Polyglot's piece kinds go black pawn, white pawn, black knight...
+                int kind = type * 2 + (colour == BitboardPosition.WHITE ? 1 : 0);
+                long pieces = position.getPieces(colour, type);
+                while (pieces != 0) {
+                    int square = Long.numberOfTrailingZeros(pieces);
+                    pieces &= pieces - 1;
+                    key ^= randoms[64 * kind + 8 * rank(square) + BitboardPosition.colOf(square)];
+                }
+            }
+        }
+
+        int rights = position.getCastlingRights();
+        if ((rights & BitboardPosition.WHITE_KINGSIDE) != 0) {
+            key ^= randoms[CASTLING_OFFSET];
+        }
+        if ((rights & BitboardPosition.WHITE_QUEENSIDE) != 0) {
+            key ^= randoms[CASTLING_OFFSET + 1];
+        }
+        if ((rights & BitboardPosition.BLACK_KINGSIDE) != 0) {
+            key ^= randoms[CASTLING_OFFSET + 2];
+        }
+        if ((rights & BitboardPosition.BLACK_QUEENSIDE) != 0) {
+            key ^= randoms[CASTLING_OFFSET + 3];
+        }
+
+        int enPassant = position.getEnPassantSquare();
+        if (enPassant != BitboardPosition.NO_SQUARE && canCaptureEnPassant(position, enPassant)) {
+            key ^= randoms[EN_PASSANT_OFFSET + BitboardPosition.colOf(enPassant)];
+        }
+        if (position.getSideToMove() == BitboardPosition.WHITE) {
+            key ^= randoms[TURN_OFFSET];
+        }
+        return key;
+    }
+
+    // Polyglot counts ranks from white's side, where the board's rows start
+    // from black's
+    static int rank(int square) {
+        return 7 - BitboardPosition.rowOf(square);
+    }
+
+    private static boolean canCaptureEnPassant(BitboardPosition position, int enPassant) {
+        int colour = position.getSideToMove();
+        // a pawn that could take on the square is one a pawn of the other
+        // colour standing there would attack
+        return (Attacks.pawn(colour ^ 1, enPassant) & position.getPieces(colour, BitboardPosition.PAWN)) != 0;
+    }
+
+} // end PolyglotHash
@@ -0,0 +1,344 @@
+package com.chess.engine;
+
+import com.chess.model.BitboardPosition;
+import com.chess.model.MoveGenerator;
+import com.chess.model.PackedMove;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// one iterative-deepening alpha-beta search over a private copy of a position.
+// Moves are made and taken back on that copy, and every buffer is allocated up
+// front, so searching does not allocate. Captures are resolved by a quiescence
+// search at the leaves, and the search stops as soon as its deadline passes,
+// answering with the best move of the deepest finished iteration (or as soon
+// as it is aborted). Results are shared with other searches through the
+// transposition table, which is also how helper threads speed up the main one
+final class Search {
+    static final int INFINITY = 32000;
+    static final int MATE = 31000;
+    static final int MAX_PLY = 128;
+
+    // move ordering: the previous iteration's best move, then captures by most
+    // valuable victim and least valuable attacker, then killers, then history
+    private static final int BEST_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+    private static final int HISTORY_LIMIT = 1 << 26;
+
+    private static final int CHECK_INTERVAL = 1023; // nodes between looks at the clock
+
+    private final BitboardPosition position;
+    private final TranspositionTable table;
+    private final AtomicBoolean abort;
+    private final AtomicBoolean cancelled;
+    private final long[] keys; // positions on the path from the last irreversible move
+    private final int rootIndex; // index of the root position in keys
+    private final int[][] moves;
+    private final int[][] scores;
+    private final int[][] killers;
+    private final int[][] history;
+
+    private long deadline;
+    private long nodes;
+    private boolean stopped;
+    private int rootBestMove;
+    private int rootBestScore;
+
+    // previousKeys are the keys of the game's positions since the last capture
+    // or pawn move, ending with the position itself, so repetitions of them are
+    // seen as draws
+    Search(BitboardPosition position, long[] previousKeys, TranspositionTable table, AtomicBoolean abort,
+            AtomicBoolean cancelled) {
+        this.table = table;
+        this.abort = abort;
+        this.cancelled = cancelled;
+        this.position = new BitboardPosition();
+        this.position.copyFrom(position);
+        int previous = previousKeys.length == 0 ? 1 : previousKeys.length;
+        this.keys = new long[previous + MAX_PLY];
+        System.arraycopy(previousKeys, 0, keys, 0, previousKeys.length);
+        this.rootIndex = previous - 1;
+        this.keys[rootIndex] = position.getKey();
+        this.moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+        this.scores = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+        this.killers = new int[MAX_PLY][2];
+        this.history = new int[12][64];
+    }
+
+    // searches one ply deeper at a time, from firstDepth, until maxDepth is
+    // reached or the time runs out. No new iteration is started once half the
+    // time has gone, since it would almost certainly not finish
+    SearchResult run(long budgetNanos, int firstDepth, int maxDepth) {
+        long start = System.nanoTime();
+        deadline = start + budgetNanos;
+        long softDeadline = start + budgetNanos / 2;
+        SearchResult result = null;
+        int previousBest = PackedMove.NONE;
+        for (int depth = firstDepth; depth <= maxDepth; depth++) {
+            rootBestMove = PackedMove.NONE;
+            rootBestScore = -INFINITY;
+            int score = negamax(depth, 0, -INFINITY, INFINITY, previousBest);
+            if (stopped) {
+                // the old best move is searched first, so whatever a partly
+                // searched iteration prefers has been checked against it
+                if (rootBestMove != PackedMove.NONE) {
+                    result = new SearchResult(rootBestMove, rootBestScore, depth, nodes);
+                }
+                break;
+            }
+            if (rootBestMove == PackedMove.NONE) {
+                // no legal moves: checkmate or stalemate
+                return new SearchResult(PackedMove.NONE, score, depth, nodes);
+            }
+            previousBest = rootBestMove;
+            result = new SearchResult(rootBestMove, score, depth, nodes);
+            if (Math.abs(score) >= MATE - MAX_PLY || System.nanoTime() - softDeadline > 0) {
+                break;
+            }
+        }
+        if (result == null) {
+            // not even one ply finished: fall back to the first legal move
+            int[] legal = new int[MoveGenerator.MAX_MOVES];
+            int count = MoveGenerator.generateLegal(position, legal);
+            return new SearchResult(count == 0 ? PackedMove.NONE : legal[0], 0, 0, nodes);
+        }
+        return result;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta, int bestMove) {
+        if (shouldStop()) {
+            return 0;
+        }
+        if (ply > 0 && (position.getHalfmoveClock() >= 100 || isRepetition(ply))) {
+            return 0;
+        }
+        int colour = position.getSideToMove();
+        boolean inCheck = position.isInCheck(colour);
+        if (inCheck) {
+            depth++;
+        }
+        if (depth <= 0) {
+            return quiesce(ply, alpha, beta);
+        }
+        if (ply >= MAX_PLY - 1) {
+            return Evaluation.evaluate(position);
+        }
+
+        // a deep enough earlier result settles the position outright, and any
+        // stored best move is tried first
+        long key = position.getKey();
+        long entry = table.probe(key);
+        if (entry != TranspositionTable.NO_ENTRY) {
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.score(entry, ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+            if (bestMove == PackedMove.NONE) {
+                bestMove = TranspositionTable.move(entry);
+            }
+        }
+
+        int[] list = moves[ply];
+        int count = MoveGenerator.generate(position, list);
+        scoreMoves(ply, count, bestMove);
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int nodeBestMove = PackedMove.NONE;
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            int move = pickMove(ply, i, count);
+            position.makeMove(move);
+            if (position.isInCheck(colour)) {
+                position.unmakeMove();
+                continue;
+            }
+            legal++;
+            keys[rootIndex + ply + 1] = position.getKey();
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha, PackedMove.NONE);
+            position.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                nodeBestMove = move;
+                if (ply == 0) {
+                    rootBestMove = move;
+                    rootBestScore = score;
+                }
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    if (!PackedMove.isCapture(move) && !PackedMove.isPromotion(move)) {
+                        rememberQuietCutoff(ply, move, depth);
+                    }
+                    break;
+                }
+            }
+        }
+        if (legal == 0) {
+            best = inCheck ? -MATE + ply : 0;
+        }
+        int bound = best >= beta ? TranspositionTable.LOWER
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bound == TranspositionTable.UPPER ? PackedMove.NONE : nodeBestMove, best, depth, bound, ply);
+        return best;
+    }
+
+    // searches captures and promotions only until the position is quiet, so the
+    // main search never stops in the middle of an exchange. The side to move may
+    // always stand pat instead, unless it is in check
+    private int quiesce(int ply, int alpha, int beta) {
+        if (shouldStop()) {
+            return 0;
+        }
+        int colour = position.getSideToMove();
+        boolean inCheck = position.isInCheck(colour);
+        if (ply >= MAX_PLY - 1) {
+            return Evaluation.evaluate(position);
+        }
+        int best = -INFINITY;
+        if (!inCheck) {
+            best = Evaluation.evaluate(position);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+
+        int[] list = moves[ply];
+        int count = MoveGenerator.generate(position, list);
+        if (!inCheck) {
+            int tactical = 0;
+            for (int i = 0; i < count; i++) {
+                if (PackedMove.isCapture(list[i]) || PackedMove.isPromotion(list[i])) {
+                    list[tactical++] = list[i];
+                }
+            }
+            count = tactical;
+        }
+        scoreMoves(ply, count, PackedMove.NONE);
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            int move = pickMove(ply, i, count);
+            position.makeMove(move);
+            if (position.isInCheck(colour)) {
+                position.unmakeMove();
+                continue;
+            }
+            legal++;
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            position.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (inCheck && legal == 0) {
+            return -MATE + ply;
+        }
+        return best;
+    }
+
+    private void scoreMoves(int ply, int count, int bestMove) {
+        int[] list = moves[ply];
+        int[] values = scores[ply];
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int from = PackedMove.from(move);
+            int to = PackedMove.to(move);
+            int moving = position.pieceAt(from);
+            if (move == bestMove) {
+                values[i] = BEST_MOVE_SCORE;
+            } else if (PackedMove.isCapture(move) || PackedMove.isPromotion(move)) {
+                int victim = position.pieceAt(to);
+                int victimValue = victim == BitboardPosition.NO_PIECE
+                        ? (PackedMove.isCapture(move) ? Evaluation.PIECE_VALUES[BitboardPosition.PAWN] : 0)
+                        : Evaluation.PIECE_VALUES[BitboardPosition.typeOf(victim)];
+                if (PackedMove.isPromotion(move)) {
+                    victimValue += Evaluation.PIECE_VALUES[PackedMove.promotion(move)];
+                }
+                values[i] = CAPTURE_SCORE + victimValue * 8 - BitboardPosition.typeOf(moving);
+            } else if (move == killers[ply][0]) {
+                values[i] = KILLER_SCORE + 1;
+            } else if (move == killers[ply][1]) {
+                values[i] = KILLER_SCORE;
+            } else {
+                values[i] = history[moving][to];
+            }
+        }
+    }
+
+    // moves the best scored of the remaining moves to position i; cutoffs
+    // usually come early, so this beats sorting the whole list
+    private int pickMove(int ply, int i, int count) {
+        int[] list = moves[ply];
+        int[] values = scores[ply];
+        int best = i;
+        for (int j = i + 1; j < count; j++) {
+            if (values[j] > values[best]) {
+                best = j;
+            }
+        }
+        int move = list[best];
+        list[best] = list[i];
+        list[i] = move;
+        int value = values[best];
+        values[best] = values[i];
+        values[i] = value;
+        return move;
+    }
+
+    // remembers a quiet move that caused a cutoff so it is tried early at the
+    // same ply and in similar positions
+    private void rememberQuietCutoff(int ply, int move, int depth) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int moving = position.pieceAt(PackedMove.from(move));
+        history[moving][PackedMove.to(move)] += depth * depth;
+        if (history[moving][PackedMove.to(move)] >= HISTORY_LIMIT) {
+            for (int[] scoresByPiece : history) {
+                for (int square = 0; square < 64; square++) {
+                    scoresByPiece[square] >>= 1;
+                }
+            }
+        }
+    }
+
+    // a position repeated since the last capture or pawn move is scored as a
+    // draw, so the side that is behind can aim for it and the other avoids it
+    private boolean isRepetition(int ply) {
+        int index = rootIndex + ply;
+        long key = keys[index];
+        int oldest = Math.max(0, index - position.getHalfmoveClock());
+        for (int i = index - 2; i >= oldest; i -= 2) {
+            if (keys[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean shouldStop() {
+        if ((++nodes & CHECK_INTERVAL) == 0 && (abort.get() || cancelled.get() || System.nanoTime() - deadline > 0)) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+} // end Search
@@ -0,0 +1,48 @@
+package com.chess.engine;
+
+import com.chess.model.PackedMove;
+
+// the outcome of a search: the move chosen (PackedMove.NONE when there is no
+// legal move), its score in centipawns for the side to move, the depth reached
+// and the number of positions visited
+public final class SearchResult {
+    private final int move;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+
+    SearchResult(int move, int score, int depth, long nodes) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+    }
+
+    public int getMove() {
+        return move;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    // checks if the score is a forced mate, for either side
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    @Override
+    public String toString() {
+        return (move == PackedMove.NONE ? "none" : PackedMove.toUci(move)) + " score " + score + " depth " + depth
+                + " nodes " + nodes;
+    }
+
+} // end SearchResult
@@ -0,0 +1,138 @@
+package com.chess.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// remembers what searches found out about positions, so a position reached
+// again (through another move order, another iteration, another thread or
+// another game) does not have to be searched again. It is a fixed size table
+// in one primitive long array, shared by every search without locks.
+//
+// Each entry is two longs: the position key XORed with the data, then the
+// data. Writers store both without synchronizing, so two threads may
+// interleave their halves of an entry; a reader only accepts an entry if the
+// halves XOR back to its key, which such a torn entry almost never does.
+//
+// Slots come in buckets of two. The first keeps the deepest result (unless it
+// has gone stale) and the second always takes the newest, so deep results are
+// not lost to shallow ones and shallow ones still get stored. Entries from
+// before the latest root search count as stale
+final class TranspositionTable {
+    // the kind of bound a stored score is
+    static final int EXACT = 0;
+    static final int LOWER = 1; // the score is at least this (the search failed high)
+    static final int UPPER = 2; // the score is at most this (the search failed low)
+
+    static final long NO_ENTRY = -1L; // never a valid data word, which only uses 54 bits
+
+    private static final int BUCKET_LONGS = 4;
+    private static final int ENTRY_BYTES = 16;
+
+    private final long[] table;
+    private final int bucketMask;
+    private final AtomicInteger generation;
+
+    // sizeMegabytes is rounded down to a power of two number of buckets
+    TranspositionTable(int sizeMegabytes) {
+        long bytes = Math.max(1, sizeMegabytes) * (1L << 20);
+        long buckets = Long.highestOneBit(Math.min(bytes / (ENTRY_BYTES * 2), 1L << 26));
+        this.table = new long[(int) buckets * BUCKET_LONGS];
+        this.bucketMask = (int) buckets - 1;
+        this.generation = new AtomicInteger();
+    }
+
+    // ages every entry stored so far; called once per root search, before
+    // its threads start. Searches of other games running at the same time
+    // see their deep entries become replaceable a little early, which only
+    // costs them a re-search of those positions
+    void newSearch() {
+        generation.incrementAndGet();
+    }
+
+    // finds the data stored for a position, or NO_ENTRY
+    long probe(long key) {
+        int bucket = bucketIndex(key);
+        for (int slot = bucket; slot < bucket + BUCKET_LONGS; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return NO_ENTRY;
+    }
+
+    // stores what a search found for a position searched ply plies from the
+    // root; mate scores are kept relative to the position
+    void store(long key, int move, int score, int depth, int bound, int ply) {
+        int bucket = bucketIndex(key);
+        long data = pack(move, toStored(score, ply), depth, bound, generation.get() & 0xFF);
+        long first = table[bucket + 1];
+        boolean sameKey = (table[bucket] ^ first) == key;
+        int slot = bucket + 2;
+        if (sameKey || first == 0 || generation(first) != generation(data) || depth >= depth(first)) {
+            slot = bucket;
+            if (sameKey && move == 0) {
+                // keep the best move of an earlier search of the same position
+                data |= move(first);
+            }
+        }
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+    }
+
+    // how many entries the table has room for
+    int capacity() {
+        return table.length / 2;
+    }
+
+    static int move(long data) {
+        return (int) (data & 0x7FFFF);
+    }
+
+    // the stored score as seen from a position ply plies from the root
+    static int score(long data, int ply) {
+        int score = (int) ((data >>> 19) & 0xFFFF) - 32768;
+        if (score >= Search.MATE - Search.MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -Search.MATE + Search.MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    static int depth(long data) {
+        return (int) ((data >>> 35) & 0xFF);
+    }
+
+    static int bound(long data) {
+        return (int) ((data >>> 43) & 3);
+    }
+
+    private static int generation(long data) {
+        return (int) ((data >>> 45) & 0xFF);
+    }
+
+    // scores that mean mate are stored as distance from this position rather
+    // than from the root, so they stay right when it is reached at another ply
+    private static int toStored(int score, int ply) {
+        if (score >= Search.MATE - Search.MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -Search.MATE + Search.MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    // bits 0-18 the move, 19-34 the score, 35-42 the depth, 43-44 the bound and
+    // 45-52 the generation. Bit 53 is always set so stored data is never zero
+    private static long pack(int move, int score, int depth, int bound, int generation) {
+        return (move & 0x7FFFFL) | ((long) (score + 32768) << 19) | ((long) Math.min(depth, 255) << 35)
+                | ((long) bound << 43) | ((long) generation << 45) | (1L << 53);
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * BUCKET_LONGS;
+    }
+
+} // end TranspositionTable
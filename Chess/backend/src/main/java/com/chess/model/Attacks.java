@@ -0,0 +1,252 @@
+package com.chess.model;
+
+import java.util.SplittableRandom;
+
+// computes the squares each kind of piece attacks as bitboards. Nothing here
+// allocates, so move generation and check detection can call it freely.
+//
+// Rook and bishop attacks come from magic bitboard tables: the pieces on the
+// squares that can block a slider (its mask) are multiplied by a magic number
+// for the square, and the top bits of the product index a table holding the
+// attacks for that arrangement of blockers. The magic numbers are found when
+// the class is loaded, by trying random sparse numbers from a fixed seed until
+// one sends every arrangement to an entry with the right attacks
+public final class Attacks {
+    private static final int[] KNIGHT_ROWS = { -2, -2, -1, -1, 1, 1, 2, 2 };
+    private static final int[] KNIGHT_COLS = { -1, 1, -2, 2, -2, 2, -1, 1 };
+    private static final int[] KING_ROWS = { -1, -1, -1, 0, 0, 1, 1, 1 };
+    private static final int[] KING_COLS = { -1, 0, 1, -1, 1, -1, 0, 1 };
+    private static final int[] ROOK_ROWS = { -1, 1, 0, 0 };
+    private static final int[] ROOK_COLS = { 0, 0, -1, 1 };
+    private static final int[] BISHOP_ROWS = { -1, -1, 1, 1 };
+    private static final int[] BISHOP_COLS = { -1, 1, -1, 1 };
+    private static final int[] WHITE_PAWN_ROWS = { -1, -1 };
+    private static final int[] BLACK_PAWN_ROWS = { 1, 1 };
+    private static final int[] PAWN_COLS = { -1, 1 };
+    private static final long MAGIC_SEED = 0x5DEECE66DL;
+
+    // knights, kings and pawns attack the same squares wherever the other
+    // pieces stand, so their attacks are looked up by square alone
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64]; // by colour
+    private static final Magic[] ROOK_MAGICS = new Magic[64];
+    private static final Magic[] BISHOP_MAGICS = new Magic[64];
+
+    static {
+        SplittableRandom random = new SplittableRandom(MAGIC_SEED);
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_ATTACKS[square] = leaper(square, KNIGHT_ROWS, KNIGHT_COLS);
+            KING_ATTACKS[square] = leaper(square, KING_ROWS, KING_COLS);
+            PAWN_ATTACKS[BitboardPosition.WHITE][square] = leaper(square, WHITE_PAWN_ROWS, PAWN_COLS);
+            PAWN_ATTACKS[BitboardPosition.BLACK][square] = leaper(square, BLACK_PAWN_ROWS, PAWN_COLS);
+            ROOK_MAGICS[square] = new Magic(square, ROOK_ROWS, ROOK_COLS, random);
+            BISHOP_MAGICS[square] = new Magic(square, BISHOP_ROWS, BISHOP_COLS, random);
+        }
+    }
+
+    private Attacks() {
+    }
+
+    public static long knight(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long king(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    // squares a pawn of the given colour attacks (white pawns move towards row 0)
+    public static long pawn(int colour, int square) {
+        return PAWN_ATTACKS[colour][square];
+    }
+
+    public static long rook(int square, long occupied) {
+        return ROOK_MAGICS[square].attacks(occupied);
+    }
+
+    public static long bishop(int square, long occupied) {
+        return BISHOP_MAGICS[square].attacks(occupied);
+    }
+
+    public static long queen(int square, long occupied) {
+        return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    // squares attacked by a piece code standing on a square
+    public static long piece(int code, int square, long occupied) {
+        switch (BitboardPosition.typeOf(code)) {
+            case BitboardPosition.PAWN:
+                return pawn(BitboardPosition.colourOf(code), square);
+            case BitboardPosition.KNIGHT:
+                return knight(square);
+            case BitboardPosition.BISHOP:
+                return bishop(square, occupied);
+            case BitboardPosition.ROOK:
+                return rook(square, occupied);
+            case BitboardPosition.QUEEN:
+                return queen(square, occupied);
+            default:
+                return king(square);
+        }
+    }
+
+    // the pieces of the given colour that attack a square
+    public static long attackers(BitboardPosition position, int square, int byColour) {
+        long occupied = position.getOccupied();
+        long queens = position.getPieces(byColour, BitboardPosition.QUEEN);
+        return (pawn(byColour ^ 1, square) & position.getPieces(byColour, BitboardPosition.PAWN))
+                | (knight(square) & position.getPieces(byColour, BitboardPosition.KNIGHT))
+                | (king(square) & position.getPieces(byColour, BitboardPosition.KING))
+                | (bishop(square, occupied) & (position.getPieces(byColour, BitboardPosition.BISHOP) | queens))
+                | (rook(square, occupied) & (position.getPieces(byColour, BitboardPosition.ROOK) | queens));
+    }
+
+    // squares strictly between two squares on the same row, column or diagonal,
+    // empty if they do not share a line. The rays are stopped by the pieces in
+    // occupied, so the path must be clear there; callers pass just the two end
+    // squares, or a position where one of them attacks the other
+    public static long between(int from, int to, long occupied) {
+        int rows = BitboardPosition.rowOf(from) - BitboardPosition.rowOf(to);
+        int cols = BitboardPosition.colOf(from) - BitboardPosition.colOf(to);
+        // the rays from both ends only overlap on the squares between them
+        if (rows == 0 || cols == 0) {
+            return rook(from, occupied) & rook(to, occupied);
+        }
+        if (Math.abs(rows) == Math.abs(cols)) {
+            return bishop(from, occupied) & bishop(to, occupied);
+        }
+        return 0L;
+    }
+
+    // checks if any piece of the given colour attacks a square
+    public static boolean isSquareAttacked(BitboardPosition position, int square, int byColour) {
+        return isSquareAttacked(position, square, byColour, position.getOccupied());
+    }
+
+    // like isSquareAttacked, with sliders blocked by the given squares rather
+    // than the position's pieces
+    public static boolean isSquareAttacked(BitboardPosition position, int square, int byColour, long occupied) {
+        long queens = position.getPieces(byColour, BitboardPosition.QUEEN);
+        return (pawn(byColour ^ 1, square) & position.getPieces(byColour, BitboardPosition.PAWN)) != 0
+                || (knight(square) & position.getPieces(byColour, BitboardPosition.KNIGHT)) != 0
+                || (king(square) & position.getPieces(byColour, BitboardPosition.KING)) != 0
+                || (bishop(square, occupied) & (position.getPieces(byColour, BitboardPosition.BISHOP) | queens)) != 0
+                || (rook(square, occupied) & (position.getPieces(byColour, BitboardPosition.ROOK) | queens)) != 0;
+    }
+
+    // squares reached by a single step in each direction; only used to fill
+    // the tables
+    private static long leaper(int square, int[] rowDirections, int[] colDirections) {
+        int row = BitboardPosition.rowOf(square);
+        int col = BitboardPosition.colOf(square);
+        long attacks = 0L;
+        for (int i = 0; i < rowDirections.length; i++) {
+            int newRow = row + rowDirections[i];
+            int newCol = col + colDirections[i];
+            if (newRow >= 0 && newRow < 8 && newCol >= 0 && newCol < 8) {
+                attacks |= 1L << BitboardPosition.square(newRow, newCol);
+            }
+        }
+        return attacks;
+    }
+
+    // squares along each direction up to and including the first blocker,
+    // walked one step at a time; only used to fill the magic tables
+    private static long slider(int square, long occupied, int[] rowDirections, int[] colDirections) {
+        long attacks = 0L;
+        for (int i = 0; i < rowDirections.length; i++) {
+            int row = BitboardPosition.rowOf(square) + rowDirections[i];
+            int col = BitboardPosition.colOf(square) + colDirections[i];
+            while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                long bit = 1L << BitboardPosition.square(row, col);
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                row += rowDirections[i];
+                col += colDirections[i];
+            }
+        }
+        return attacks;
+    }
+
+    // the attack table of a slider on one square
+    private static final class Magic {
+        private final long mask; // squares whose pieces can block the slider
+        private final long magic;
+        private final int shift;
+        private final long[] table;
+
+        Magic(int square, int[] rowDirections, int[] colDirections, SplittableRandom random) {
+            // a piece on the last square of a ray cannot block anything
+            // behind it, so edge squares are left out of the mask
+            long edges = 0L;
+            int row = BitboardPosition.rowOf(square);
+            int col = BitboardPosition.colOf(square);
+            for (int i = 0; i < 8; i++) {
+                if (row != 0) {
+                    edges |= 1L << BitboardPosition.square(0, i);
+                }
+                if (row != 7) {
+                    edges |= 1L << BitboardPosition.square(7, i);
+                }
+                if (col != 0) {
+                    edges |= 1L << BitboardPosition.square(i, 0);
+                }
+                if (col != 7) {
+                    edges |= 1L << BitboardPosition.square(i, 7);
+                }
+            }
+            this.mask = slider(square, 0L, rowDirections, colDirections) & ~edges;
+            int bits = Long.bitCount(mask);
+            this.shift = 64 - bits;
+
+            // every arrangement of blockers, walked as the subsets of the mask
+            int size = 1 << bits;
+            long[] blockers = new long[size];
+            long[] attacks = new long[size];
+            long subset = 0L;
+            for (int i = 0; i < size; i++) {
+                blockers[i] = subset;
+                attacks[i] = slider(square, subset, rowDirections, colDirections);
+                subset = (subset - mask) & mask;
+            }
+
+            this.table = new long[size];
+            this.magic = findMagic(blockers, attacks, random);
+        }
+
+        long attacks(long occupied) {
+            return table[(int) (((occupied & mask) * magic) >>> shift)];
+        }
+
+        // tries random numbers with few bits set, which make good magics far
+        // more often than dense ones, until one fills the table without two
+        // arrangements with different attacks landing on the same entry
+        private long findMagic(long[] blockers, long[] attacks, SplittableRandom random) {
+            int[] filledBy = new int[table.length]; // the attempt that last wrote each entry
+            for (int attempt = 1; ; attempt++) {
+                long candidate = random.nextLong() & random.nextLong() & random.nextLong();
+                // the top bits of the product must depend on the mask
+                if (Long.bitCount((mask * candidate) & 0xFF00000000000000L) < 6) {
+                    continue;
+                }
+                boolean fits = true;
+                for (int i = 0; i < blockers.length && fits; i++) {
+                    int index = (int) ((blockers[i] * candidate) >>> shift);
+                    if (filledBy[index] != attempt) {
+                        filledBy[index] = attempt;
+                        table[index] = attacks[i];
+                    } else if (table[index] != attacks[i]) {
+                        fits = false;
+                    }
+                }
+                if (fits) {
+                    return candidate;
+                }
+            }
+        }
+    }
+
+} // end Attacks
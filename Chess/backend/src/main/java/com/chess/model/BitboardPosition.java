@@ -0,0 +1,393 @@
+package com.chess.model;
+
+import java.util.Arrays;
+
+// bitboard representation of a chess position: one 64-bit occupancy mask per
+// piece type and colour, plus side to move, castling rights and the en-passant
+// square packed into primitive fields. Squares are numbered row * 8 + col using
+// the same rows and columns as Position, so square 0 is (0, 0) and square 63 is
+// (7, 7). A Zobrist key of the whole position is kept up to date by every
+// change, so the position's identity is always available in O(1). Whether a
+// square is attacked is worked out when asked, with a fixed handful of lookups
+// in the magic bitboard tables in Attacks. Moves can be taken back with
+// unmakeMove: every makeMove pushes what it cannot recompute onto a primitive
+// undo stack, so lines of any depth can be explored and unwound without
+// allocating.
+public final class BitboardPosition {
+    // piece types
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    // colours (match Colour.ordinal())
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // castling rights bits
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING = 15;
+
+    public static final int NO_PIECE = -1;
+    public static final int NO_SQUARE = -1;
+
+    // castling rights kept when a piece moves from or to each square; only the
+    // king and rook home squares take rights away
+    private static final int[] CASTLING_KEPT = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_KEPT, ALL_CASTLING);
+        CASTLING_KEPT[square(7, 4)] = ALL_CASTLING & ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_KEPT[square(7, 7)] = ALL_CASTLING & ~WHITE_KINGSIDE;
+        CASTLING_KEPT[square(7, 0)] = ALL_CASTLING & ~WHITE_QUEENSIDE;
+        CASTLING_KEPT[square(0, 4)] = ALL_CASTLING & ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_KEPT[square(0, 7)] = ALL_CASTLING & ~BLACK_KINGSIDE;
+        CASTLING_KEPT[square(0, 0)] = ALL_CASTLING & ~BLACK_QUEENSIDE;
+    }
+
+    private final long[] pieces; // indexed by piece code (colour * 6 + type)
+    private final long[] colours; // all pieces of each colour
+    private long occupied; // all pieces on the board
+    private final byte[] mailbox; // piece code on each square, or NO_PIECE
+
+    private int sideToMove;
+    private int castlingRights;
+    private int enPassantSquare;
+    private int halfmoveClock; // plies since the last capture or pawn move
+    private long key; // Zobrist hash of everything above
+
+    // one entry per move made: the move and the state it overwrote packed into a
+    // long (see pushUndo), and the key before the move
+    private long[] undoStates;
+    private long[] undoKeys;
+    private int undoSize;
+
+    public BitboardPosition() {
+        pieces = new long[12];
+        colours = new long[2];
+        mailbox = new byte[64];
+        undoStates = new long[256];
+        undoKeys = new long[256];
+        clear();
+    }
+
+    // removes every piece and resets the state fields
+    public void clear() {
+        Arrays.fill(pieces, 0L);
+        colours[WHITE] = 0L;
+        colours[BLACK] = 0L;
+        occupied = 0L;
+        Arrays.fill(mailbox, (byte) NO_PIECE);
+        sideToMove = WHITE;
+        castlingRights = 0;
+        enPassantSquare = NO_SQUARE;
+        halfmoveClock = 0;
+        key = Zobrist.side(WHITE);
+        undoSize = 0;
+    }
+
+    // copies another position into this one without allocating. The undo stack
+    // is not copied, so the copy cannot take back moves made before it
+    public void copyFrom(BitboardPosition other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, 12);
+        colours[WHITE] = other.colours[WHITE];
+        colours[BLACK] = other.colours[BLACK];
+        occupied = other.occupied;
+        System.arraycopy(other.mailbox, 0, mailbox, 0, 64);
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        key = other.key;
+        undoSize = 0;
+    }
+
+    // places a piece on an empty square
+    public void putPiece(int square, int code) {
+        long bit = 1L << square;
+        pieces[code] |= bit;
+        colours[colourOf(code)] |= bit;
+        occupied |= bit;
+        mailbox[square] = (byte) code;
+        key ^= Zobrist.piece(code, square);
+    }
+
+    // removes whatever piece is on a square and returns its code
+    public int removePiece(int square) {
+        int code = mailbox[square];
+        if (code != NO_PIECE) {
+            long bit = ~(1L << square);
+            pieces[code] &= bit;
+            colours[colourOf(code)] &= bit;
+            occupied &= bit;
+            mailbox[square] = (byte) NO_PIECE;
+            key ^= Zobrist.piece(code, square);
+        }
+        return code;
+    }
+
+    // moves the piece on one square to an empty square
+    public void movePiece(int from, int to) {
+        int code = mailbox[from];
+        long bits = (1L << from) | (1L << to);
+        pieces[code] ^= bits;
+        colours[colourOf(code)] ^= bits;
+        occupied ^= bits;
+        mailbox[from] = (byte) NO_PIECE;
+        mailbox[to] = (byte) code;
+        key ^= Zobrist.piece(code, from) ^ Zobrist.piece(code, to);
+    }
+
+    // gets the code of the piece on a square, or NO_PIECE
+    public int pieceAt(int square) {
+        return mailbox[square];
+    }
+
+    public boolean isEmpty(int square) {
+        return (occupied & (1L << square)) == 0;
+    }
+
+    // gets the bitboard of one piece type of one colour
+    public long getPieces(int colour, int type) {
+        return pieces[code(colour, type)];
+    }
+
+    public long getColourOccupancy(int colour) {
+        return colours[colour];
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
+    // finds the square of a king, or NO_SQUARE if it has been taken
+    public int kingSquare(int colour) {
+        long king = pieces[code(colour, KING)];
+        return king == 0 ? NO_SQUARE : Long.numberOfTrailingZeros(king);
+    }
+
+    // checks if any piece of the given colour attacks a square
+    public boolean isAttacked(int square, int byColour) {
+        return Attacks.isSquareAttacked(this, square, byColour);
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int colour) {
+        key ^= Zobrist.side(sideToMove) ^ Zobrist.side(colour);
+        sideToMove = colour;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public boolean hasCastlingRight(int right) {
+        return (castlingRights & right) != 0;
+    }
+
+    public void setCastlingRights(int rights) {
+        key ^= Zobrist.castling(castlingRights) ^ Zobrist.castling(rights);
+        castlingRights = rights;
+    }
+
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int square) {
+        key ^= Zobrist.enPassant(enPassantSquare) ^ Zobrist.enPassant(square);
+        enPassantSquare = square;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int plies) {
+        halfmoveClock = plies;
+    }
+
+    // gets the Zobrist key of the position
+    public long getKey() {
+        return key;
+    }
+
+    // works the Zobrist key out from scratch (the incremental key must always
+    // match it)
+    public long computeKey() {
+        long fullKey = Zobrist.side(sideToMove) ^ Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        for (int square = 0; square < 64; square++) {
+            if (mailbox[square] != NO_PIECE) {
+                fullKey ^= Zobrist.piece(mailbox[square], square);
+            }
+        }
+        return fullKey;
+    }
+
+    // plays a packed move (see PackedMove) for the piece on its source square,
+    // updating the castling rights, en passant square, halfmove clock and turn.
+    // unmakeMove takes it back
+    public void makeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int flags = PackedMove.flags(move);
+        int moving = mailbox[from];
+        int colour = colourOf(moving);
+
+        // an en passant capture takes the pawn behind the destination square
+        int capturedSquare = flags == PackedMove.EN_PASSANT ? (colour == WHITE ? to + 8 : to - 8) : to;
+        int captured = (flags & PackedMove.CAPTURE) != 0 ? mailbox[capturedSquare] : NO_PIECE;
+        pushUndo(move, captured);
+        if (captured != NO_PIECE) {
+            removePiece(capturedSquare);
+        }
+
+        movePiece(from, to);
+        if ((flags & PackedMove.PROMOTION) != 0) {
+            removePiece(to);
+            putPiece(to, code(colour, PackedMove.promotion(move)));
+        } else if (flags == PackedMove.KING_CASTLE) {
+            movePiece(to + 1, to - 1);
+        } else if (flags == PackedMove.QUEEN_CASTLE) {
+            movePiece(to - 2, to + 1);
+        }
+
+        setEnPassantSquare(flags == PackedMove.DOUBLE_PAWN_PUSH ? (from + to) >> 1 : NO_SQUARE);
+        int rights = castlingRights & CASTLING_KEPT[from] & CASTLING_KEPT[to];
+        if (rights != castlingRights) {
+            setCastlingRights(rights);
+        }
+        halfmoveClock = captured != NO_PIECE || typeOf(moving) == PAWN ? 0 : halfmoveClock + 1;
+        setSideToMove(colour ^ 1);
+    }
+
+    // takes back the last move made with makeMove
+    public void unmakeMove() {
+        if (undoSize == 0) {
+            throw new IllegalStateException("No move to take back.");
+        }
+        undoSize--;
+        long state = undoStates[undoSize];
+        int move = (int) (state & 0x7FFFF);
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int flags = PackedMove.flags(move);
+        int colour = colourOf(mailbox[to]);
+
+        if ((flags & PackedMove.PROMOTION) != 0) {
+            removePiece(to);
+            putPiece(from, code(colour, PAWN));
+        } else {
+            movePiece(to, from);
+            if (flags == PackedMove.KING_CASTLE) {
+                movePiece(to - 1, to + 1);
+            } else if (flags == PackedMove.QUEEN_CASTLE) {
+                movePiece(to + 1, to - 2);
+            }
+        }
+        int captured = (int) ((state >>> 19) & 15) - 1;
+        if (flags == PackedMove.EN_PASSANT) {
+            putPiece(colour == WHITE ? to + 8 : to - 8, captured);
+        } else if (captured != NO_PIECE) {
+            putPiece(to, captured);
+        }
+
+        castlingRights = (int) ((state >>> 23) & 15);
+        enPassantSquare = (int) ((state >>> 27) & 127) - 1;
+        sideToMove = (int) ((state >>> 34) & 1);
+        halfmoveClock = (int) (state >>> 35);
+        key = undoKeys[undoSize];
+    }
+
+    // number of moves unmakeMove can take back
+    public int getUndoDepth() {
+        return undoSize;
+    }
+
+    // gets a move on the undo stack, oldest first; together they are every move
+    // made since the position was set up
+    public int moveAt(int index) {
+        if (index < 0 || index >= undoSize) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (int) (undoStates[index] & 0x7FFFF);
+    }
+
+    // saves the state a move overwrites. Bits 0-18 hold the move, 19-22 the
+    // captured piece code plus one, 23-26 the castling rights, 27-33 the en
+    // passant square plus one, 34 the side to move and 35 up the halfmove clock
+    private void pushUndo(int move, int captured) {
+        if (undoSize == undoStates.length) {
+            undoStates = Arrays.copyOf(undoStates, undoSize * 2);
+            undoKeys = Arrays.copyOf(undoKeys, undoSize * 2);
+        }
+        undoStates[undoSize] = move
+                | (long) (captured + 1) << 19
+                | (long) castlingRights << 23
+                | (long) (enPassantSquare + 1) << 27
+                | (long) sideToMove << 34
+                | (long) halfmoveClock << 35;
+        undoKeys[undoSize] = key;
+        undoSize++;
+    }
+
+    // checks if the king of the given colour is attacked
+    public boolean isInCheck(int colour) {
+        int king = kingSquare(colour);
+        return king != NO_SQUARE && isAttacked(king, colour ^ 1);
+    }
+
+    // packs the pieces into 32 bytes, one nibble per square holding the piece
+    // code plus one (zero for an empty square)
+    public void packSquares(byte[] out, int offset) {
+        for (int square = 0; square < 64; square += 2) {
+            out[offset + (square >> 1)] = (byte) (((mailbox[square] + 1) << 4) | (mailbox[square + 1] + 1));
+        }
+    }
+
+    // replaces the pieces with ones unpacked from packSquares output
+    public void unpackSquares(byte[] in, int offset) {
+        for (int square = 0; square < 64; square++) {
+            removePiece(square);
+            int packed = in[offset + (square >> 1)];
+            int code = ((square & 1) == 0 ? (packed >> 4) : packed) & 15;
+            if (code != 0) {
+                putPiece(square, code - 1);
+            }
+        }
+    }
+
+    // helpers for packing and unpacking squares and piece codes
+    public static int square(int row, int col) {
+        return (row << 3) | col;
+    }
+
+    public static int rowOf(int square) {
+        return square >>> 3;
+    }
+
+    public static int colOf(int square) {
+        return square & 7;
+    }
+
+    public static int code(int colour, int type) {
+        return colour * 6 + type;
+    }
+
+    public static int colourOf(int code) {
+        return code >= 6 ? BLACK : WHITE;
+    }
+
+    public static int typeOf(int code) {
+        return code >= 6 ? code - 6 : code;
+    }
+
+} // end BitboardPosition
@@ -1,289 +1,99 @@
 package com.chess.model;
 
+import java.util.ArrayList;
+import java.util.List;
+
 class Board {
-    private Piece[][] grid;
-    private Move lastMove;
-    private String lastSpecialMove;
-    private Piece sourcePiece;
-    private Piece destinationPiece;
+    // one shared, immutable piece object per bitboard piece code
+    private static final Piece[] PIECES = {
+            new Pawn(Colour.WHITE), new Knight(Colour.WHITE), new Bishop(Colour.WHITE),
+            new Rook(Colour.WHITE), new Queen(Colour.WHITE), new King(Colour.WHITE),
+            new Pawn(Colour.BLACK), new Knight(Colour.BLACK), new Bishop(Colour.BLACK),
+            new Rook(Colour.BLACK), new Queen(Colour.BLACK), new King(Colour.BLACK) };
+
+    private BitboardPosition position; // also holds the undo stack
+    private int[] moveBuffer; // reused by every move generation on this board
 
     public Board() {
-        grid = new Piece[8][8];
+        position = new BitboardPosition();
+        moveBuffer = new int[MoveGenerator.MAX_MOVES];
     }
 
     // places all of the chess pieces in their corresponding starting positions
     public void initialize() {
         // places pawns
         for (int col = 0; col < 8; col++) {
-            grid[1][col] = new Pawn(Colour.BLACK);
-            grid[6][col] = new Pawn(Colour.WHITE);
+            set(1, col, new Pawn(Colour.BLACK));
+            set(6, col, new Pawn(Colour.WHITE));
         }
 
         // places rooks
-        grid[0][0] = new Rook(Colour.BLACK);
-        grid[0][7] = new Rook(Colour.BLACK);
-        grid[7][0] = new Rook(Colour.WHITE);
-        grid[7][7] = new Rook(Colour.WHITE);
+        set(0, 0, new Rook(Colour.BLACK));
+        set(0, 7, new Rook(Colour.BLACK));
+        set(7, 0, new Rook(Colour.WHITE));
+        set(7, 7, new Rook(Colour.WHITE));
 
         // places knights
-        grid[0][1] = new Knight(Colour.BLACK);
-        grid[0][6] = new Knight(Colour.BLACK);
-        grid[7][1] = new Knight(Colour.WHITE);
-        grid[7][6] = new Knight(Colour.WHITE);
+        set(0, 1, new Knight(Colour.BLACK));
+        set(0, 6, new Knight(Colour.BLACK));
+        set(7, 1, new Knight(Colour.WHITE));
+        set(7, 6, new Knight(Colour.WHITE));
 
         // places bishops
-        grid[0][2] = new Bishop(Colour.BLACK);
-        grid[0][5] = new Bishop(Colour.BLACK);
-        grid[7][2] = new Bishop(Colour.WHITE);
-        grid[7][5] = new Bishop(Colour.WHITE);
+        set(0, 2, new Bishop(Colour.BLACK));
+        set(0, 5, new Bishop(Colour.BLACK));
+        set(7, 2, new Bishop(Colour.WHITE));
+        set(7, 5, new Bishop(Colour.WHITE));
 
         // places queens
-        grid[0][3] = new Queen(Colour.BLACK);
-        grid[7][3] = new Queen(Colour.WHITE);
+        set(0, 3, new Queen(Colour.BLACK));
+        set(7, 3, new Queen(Colour.WHITE));
 
         // places kings
-        grid[0][4] = new King(Colour.BLACK);
-        grid[7][4] = new King(Colour.WHITE);
+        set(0, 4, new King(Colour.BLACK));
+        set(7, 4, new King(Colour.WHITE));
 
+        position.setSideToMove(BitboardPosition.WHITE);
+        position.setCastlingRights(BitboardPosition.ALL_CASTLING);
+        position.setEnPassantSquare(BitboardPosition.NO_SQUARE);
     }
 
-    // makes a move on the chessboard
+    // makes a move on the chessboard and hands the turn to the other colour
     public void makeMove(Move move) {
-        lastMove = move;
-        lastSpecialMove = null;
-        // finds where the piece the player is trying to move is currently placed
         Position source = move.getSource();
-        sourcePiece = getPieceAt(source);
-
-        // finds where the player wants to move the piece
         Position destination = move.getDestination();
-        destinationPiece = getPieceAt(destination);
-
-        // moves the piece to the desired location
-        Piece piece = grid[source.getRow()][source.getCol()];
-        grid[source.getRow()][source.getCol()] = null;
-        grid[destination.getRow()][destination.getCol()] = piece;
-    }
-
-    public void undoMove() {
-        if (lastMove != null) {
-            Position source = lastMove.getSource();
-            Position destination = lastMove.getDestination();
-
-            grid[source.getRow()][source.getCol()] = sourcePiece;
-            grid[destination.getRow()][destination.getCol()] = destinationPiece;
-        } else {
-            Piece king = null;
-            Piece rook = null;
-            switch (lastSpecialMove) {
-                case "WKC":
-                    king = grid[7][6];
-                    rook = grid[7][5];
-                    grid[7][4] = king;
-                    grid[7][7] = rook;
-                    grid[7][5] = null;
-                    grid[7][6] = null;
-                    break;
-                case "WQC":
-                    king = grid[7][2];
-                    rook = grid[7][3];
-                    grid[7][4] = king;
-                    grid[7][0] = rook;
-                    grid[7][2] = null;
-                    grid[7][3] = null;
-                    break;
-                case "BKC":
-                    king = grid[0][6];
-                    rook = grid[0][5];
-                    grid[0][4] = king;
-                    grid[0][7] = rook;
-                    grid[0][5] = null;
-                    grid[0][6] = null;
-                    break;
-                case "BQC":
-                    king = grid[0][2];
-                    rook = grid[0][3];
-                    grid[0][4] = king;
-                    grid[0][0] = rook;
-                    grid[0][2] = null;
-                    grid[0][3] = null;
-                    break;
-                default:
-                    int colTaking = lastSpecialMove.charAt(1) - '0';
-                    int rowTaking = lastSpecialMove.charAt(2) - '0';
-                    int colTaken = lastSpecialMove.charAt(3) - '0';
-                    int rowTaken = lastSpecialMove.charAt(4) - '0';
-                    if (lastSpecialMove.charAt(0) == 'W') {
-                        grid[rowTaking][colTaking] = new Pawn(Colour.WHITE);
-                        grid[rowTaken][colTaken] = new Pawn(Colour.BLACK);
-                        grid[rowTaken - 1][colTaken] = null;
-
-                    } else if (lastSpecialMove.charAt(0) == 'B') {
-                        grid[rowTaking][colTaking] = new Pawn(Colour.BLACK);
-                        grid[rowTaken][colTaken] = new Pawn(Colour.WHITE);
-                        grid[rowTaken + 1][colTaken] = null;
-                    } else {
-                        if (rowTaken == 0) {
-                            grid[rowTaking][colTaking] = new Pawn(Colour.WHITE);
-                            grid[rowTaken][colTaken] = destinationPiece;
-                        } else {
-                            grid[rowTaking][colTaking] = new Pawn(Colour.BLACK);
-                            grid[rowTaken][colTaken] = destinationPiece;
-                        }
-
-                    }
-            }
-        }
-
-    }
-
-    public Boolean whiteKingsideCastle() {
-        Position kingsideBishop = new Position(7, 5);
-        Position kingsideKnight = new Position(7, 6);
-
-        if ((getPieceAt(kingsideBishop) != null || getPieceAt(kingsideKnight) != null)) {
-            return Boolean.FALSE;
-        } else {
-            lastMove = null;
-            lastSpecialMove = "WKC";
-            sourcePiece = null;
-            destinationPiece = null;
-            Piece king = grid[7][4];
-            Piece rook = grid[7][7];
-            grid[7][4] = null;
-            grid[7][7] = null;
-            grid[7][5] = rook;
-            grid[7][6] = king;
-            return Boolean.TRUE;
-        }
-    }
-
-    public Boolean whiteQueensideCastle() {
-        Position Queen = new Position(7, 3);
-        Position QueensideBishop = new Position(7, 2);
-        Position QueensideKnight = new Position(7, 1);
-
-        if ((getPieceAt(Queen) != null || getPieceAt(QueensideBishop) != null || getPieceAt(QueensideKnight) != null)) {
-            return Boolean.FALSE;
-        } else {
-            lastMove = null;
-            lastSpecialMove = "WQC";
-            sourcePiece = null;
-            destinationPiece = null;
-            Piece king = grid[7][4];
-            Piece rook = grid[7][0];
-            grid[7][4] = null;
-            grid[7][0] = null;
-            grid[7][2] = king;
-            grid[7][3] = rook;
-            return Boolean.TRUE;
-        }
-    }
-
-    public Boolean blackKingsideCastle() {
-        Position kingsideBishop = new Position(0, 5);
-        Position kingsideKnight = new Position(0, 6);
-
-        if ((getPieceAt(kingsideBishop) != null || getPieceAt(kingsideKnight) != null)) {
-            return Boolean.FALSE;
-        } else {
-            lastMove = null;
-            lastSpecialMove = "BKC";
-            sourcePiece = null;
-            destinationPiece = null;
-            Piece king = grid[0][4];
-            Piece rook = grid[0][7];
-            grid[0][4] = null;
-            grid[0][7] = null;
-            grid[0][5] = rook;
-            grid[0][6] = king;
-            return Boolean.TRUE;
+        int from = BitboardPosition.square(source.getRow(), source.getCol());
+        int to = BitboardPosition.square(destination.getRow(), destination.getCol());
+
+        Piece piece = get(source.getRow(), source.getCol());
+        // a pawn reaching the last row is given as a plain move, and is made
+        // a queen like the promotion getPossibleMoves lists it as
+        if (piece instanceof Pawn && (destination.getRow() == 0 || destination.getRow() == 7)) {
+            pawnPromotion(move, new Queen(piece.getColour()));
+            return;
         }
-    }
-
-    public Boolean blackQueensideCastle() {
-        Position Queen = new Position(0, 3);
-        Position QueensideBishop = new Position(0, 2);
-        Position QueensideKnight = new Position(0, 1);
-
-        if ((getPieceAt(Queen) != null || getPieceAt(QueensideBishop) != null || getPieceAt(QueensideKnight) != null)) {
-            return Boolean.FALSE;
-        } else {
-            lastMove = null;
-            lastSpecialMove = "BQC";
-            sourcePiece = null;
-            destinationPiece = null;
-            Piece king = grid[0][4];
-            Piece rook = grid[0][0];
-            grid[0][4] = null;
-            grid[0][0] = null;
-            grid[0][2] = king;
-            grid[0][3] = rook;
-            return Boolean.TRUE;
+        int flags = position.isEmpty(to) ? PackedMove.QUIET : PackedMove.CAPTURE;
+        // a two step pawn move leaves its skipped square open to en passant
+        if (piece instanceof Pawn
+                && Math.abs(destination.getRow() - source.getRow()) == 2) {
+            flags = PackedMove.DOUBLE_PAWN_PUSH;
         }
+        position.makeMove(PackedMove.encode(from, to, flags));
     }
 
-    public void enPassant(Position pawnTakingPosition, Position pawnTakenPosition) {
-        Piece pawnTaking = getPieceAt(pawnTakingPosition);
-        if (pawnTaking.getColour() == Colour.WHITE) {
-            lastMove = null;
-            lastSpecialMove = "W" + Integer.toString(pawnTakingPosition.getRow())
-                    + Integer.toString(pawnTakingPosition.getCol()) + Integer.toString(pawnTakenPosition.getRow())
-                    + Integer.toString(pawnTakenPosition.getCol());
-            ;
-            sourcePiece = null;
-            destinationPiece = null;
-            grid[pawnTakenPosition.getRow() - 1][pawnTakenPosition.getCol()] = pawnTaking;
-            grid[pawnTakingPosition.getRow()][pawnTakingPosition.getCol()] = null;
-            grid[pawnTakenPosition.getRow()][pawnTakenPosition.getCol()] = null;
-        } else {
-            lastMove = null;
-            lastSpecialMove = "B" + Integer.toString(pawnTakingPosition.getRow())
-                    + Integer.toString(pawnTakingPosition.getCol()) + Integer.toString(pawnTakenPosition.getRow())
-                    + Integer.toString(pawnTakenPosition.getCol());
-            ;
-            sourcePiece = null;
-            destinationPiece = null;
-            grid[pawnTakenPosition.getRow() + 1][pawnTakenPosition.getCol()] = pawnTaking;
-            grid[pawnTakingPosition.getRow()][pawnTakingPosition.getCol()] = null;
-            grid[pawnTakenPosition.getRow()][pawnTakenPosition.getCol()] = null;
-        }
-
+    // takes back the last move, castle, en passant capture or promotion. Any
+    // number of moves can be taken back in turn
+    public void undoMove() {
+        position.unmakeMove();
     }
 
     public void pawnPromotion(Move move, Piece piece) {
-        lastMove = null;
-        lastSpecialMove = "P" + Integer.toString(move.getSource().getRow())
-                + Integer.toString(move.getSource().getCol()) + Integer.toString(move.getDestination().getRow())
-                + Integer.toString(move.getDestination().getCol());
-        ;
-        sourcePiece = grid[move.getSource().getRow()][move.getSource().getCol()];
-        destinationPiece = grid[move.getDestination().getRow()][move.getDestination().getCol()];
-        grid[move.getSource().getRow()][move.getSource().getCol()] = null;
-        grid[move.getDestination().getRow()][move.getDestination().getCol()] = piece;
-    }
-
-    public Move getLastMove() {
-        return lastMove;
-    }
-
-    public String getLastSpecialMove() {
-        return lastSpecialMove;
-    }
-
-    public Piece getSourcePiece() {
-        return sourcePiece;
-    }
-
-    public Piece getDestinationPiece() {
-        return destinationPiece;
-    }
-
-    public void replaceLastMove(Move move, String string, Piece spiece, Piece dpiece) {
-        lastMove = move;
-        lastSpecialMove = string;
-        sourcePiece = spiece;
-        destinationPiece = dpiece;
+        Position destination = move.getDestination();
+        int to = BitboardPosition.square(destination.getRow(), destination.getCol());
+        int flags = position.isEmpty(to) ? PackedMove.PROMOTION : PackedMove.PROMOTION_CAPTURE;
+        position.makeMove(PackedMove.encode(
+                BitboardPosition.square(move.getSource().getRow(), move.getSource().getCol()), to, flags,
+                piece.getType()));
     }
 
     // checks if where the player wants to move is within the chessboard
@@ -295,16 +105,13 @@ class Board {
 
     // checks if the position the player wants to go to is empty
     public boolean isEmptyPosition(Position position) {
-        if (grid[position.getRow()][position.getCol()] == null) {
-            return true;
-        }
-        return false;
+        return this.position.isEmpty(BitboardPosition.square(position.getRow(), position.getCol()));
     }
 
     // removes a taken piece at a certain position
     public Piece getPieceAt(Position position) {
         if (isValidPosition(position)) {
-            return grid[position.getRow()][position.getCol()];
+            return get(position.getRow(), position.getCol());
         }
         return null;
     }
@@ -312,15 +119,90 @@ class Board {
     // checks if a king of its specific colour the has been taken (if true, the game
     // ends)
     public boolean isKingTaken(Colour colour) {
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece piece = grid[row][col];
-                if (piece instanceof King && piece.getColour() == colour) {
-                    return false; // King of the specific colour is still on the board
-                }
+        return position.getPieces(colour.ordinal(), BitboardPosition.KING) == 0;
+    }
+
+    // gets all possible moves for a piece standing on a position
+    public List<Move> getPossibleMoves(Position source, Piece piece) {
+        int count = MoveGenerator.generatePieceMoves(position,
+                BitboardPosition.square(source.getRow(), source.getCol()), piece.getCode(), moveBuffer, 0);
+        List<Move> possibleMoves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int move = moveBuffer[i];
+            // a promotion is listed once, as a plain move to the last row
+            if (PackedMove.isPromotion(move) && PackedMove.promotion(move) != BitboardPosition.QUEEN) {
+                continue;
+            }
+            int to = PackedMove.to(move);
+            possibleMoves.add(new Move(source, new Position(BitboardPosition.rowOf(to), BitboardPosition.colOf(to))));
+        }
+        return possibleMoves;
+    }
+
+    // checks if a move is one of the possible moves of the piece on its source
+    // square without building a list of moves
+    public boolean isPossibleMove(Move move) {
+        Position source = move.getSource();
+        Position destination = move.getDestination();
+        Piece piece = getPieceAt(source);
+        if (piece == null || !isValidPosition(destination)) {
+            return false;
+        }
+        int to = BitboardPosition.square(destination.getRow(), destination.getCol());
+        int count = MoveGenerator.generatePieceMoves(position,
+                BitboardPosition.square(source.getRow(), source.getCol()), piece.getCode(), moveBuffer, 0);
+        for (int i = 0; i < count; i++) {
+            if (PackedMove.to(moveBuffer[i]) == to) {
+                return true;
             }
         }
-        return true; // king of the specific colour has been taken
+        return false;
+    }
+
+    // finds the king of a colour using its bitboard
+    public Position findKing(Colour colour) {
+        int square = position.kingSquare(colour.ordinal());
+        if (square == BitboardPosition.NO_SQUARE) {
+            return null;
+        }
+        return new Position(BitboardPosition.rowOf(square), BitboardPosition.colOf(square));
+    }
+
+    // gets the colour whose turn it is
+    public Colour getSideToMove() {
+        return position.getSideToMove() == BitboardPosition.WHITE ? Colour.WHITE : Colour.BLACK;
+    }
+
+    public boolean hasCastlingRight(int right) {
+        return position.hasCastlingRight(right);
+    }
+
+    // gets the square a pawn can capture en passant on, or null if there is none
+    public Position getEnPassantPosition() {
+        int square = position.getEnPassantSquare();
+        if (square == BitboardPosition.NO_SQUARE) {
+            return null;
+        }
+        return new Position(BitboardPosition.rowOf(square), BitboardPosition.colOf(square));
+    }
+
+    BitboardPosition getPosition() {
+        return position;
+    }
+
+    // reads the piece on a square from the bitboard position
+    private Piece get(int row, int col) {
+        int code = position.pieceAt(BitboardPosition.square(row, col));
+        return code == BitboardPosition.NO_PIECE ? null : PIECES[code];
+    }
+
+    // replaces whatever is on a square with a piece (or nothing)
+    private void set(int row, int col, Piece piece) {
+        int square = BitboardPosition.square(row, col);
+        position.removePiece(square);
+        if (piece != null) {
+            position.putPiece(square, piece.getCode());
+        }
     }
 
     // @Override
@@ -335,7 +217,7 @@ class Board {
     // for (int row = 0; row < 8; row++) {
     // display.append(row + 1).append(" ");
     // for (int col = 0; col < 8; col++) {
-    // Piece piece = grid[row][col];
+    // Piece piece = get(row, col);
     // if ((row + col) % 2 == 1) {
     // display.append("\033[102m");
     // }
@@ -355,7 +237,7 @@ class Board {
         String[][] newBoard = new String[8][8];
         for (int row = 0; row < 8; row++) {
             for (int col = 0; col < 8; col++) {
-                Piece piece = grid[row][col];
+                Piece piece = get(row, col);
                 if (piece != null) {
                     String colour = (piece.getColour() == Colour.WHITE) ? "W|" : "B|";
                     newBoard[row][col] = colour + piece.getSymbol();
@@ -1,29 +1,30 @@
 package com.chess.model;
 
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.lang.Math;
 
 public class ChessGame {
+    private static final byte SNAPSHOT_VERSION = 3;
+    private static final int SNAPSHOT_HEADER_SIZE = 10;
+    // destination rows makeMove(String, String) reads as promotions, indexed by
+    // bitboard piece type (knight, bishop, rook, queen)
+    private static final int[] WHITE_PROMOTION_ROWS = { -1, 3, 2, 4, 5 };
+    private static final int[] BLACK_PROMOTION_ROWS = { -1, 5, 6, 4, 3 };
+
     private Board board; // holds the chessboard
     private Player[] players; // holds the players
-    private int currentPlayerIndex; // tells us who's turn it is
-    private Boolean inCheck;
+    private Boolean inCheck; // the side to move is in check
     private Boolean gameIsOver;
-    private List<Position> inCheckPositions;
-    private List<Position> blockPositions;
-    private List<Position> givingCheckPositions;
-    private List<Move> inCheckLegalMoves;
-    private Move lastMove;
-
-    private Boolean whiteKingMoved;
-    private Boolean blackKingMoved;
-    private Boolean whiteKingsideRookMoved;
-    private Boolean whiteQueensideRookMoved;
-    private Boolean blackKingsideRookMoved;
-    private Boolean blackQueensideRookMoved;
+    private int[] legalMoves; // the side to move's legal moves, packed (see PackedMove)
+    private int legalMoveCount;
+    private List<LegalMove> legalMoveList; // legalMoves for clients, null until asked for
 
-    private List<Position> inCheckPawnPositions;
+    private PositionHistory history; // keys of the positions reached, for draw detection
+    private String startFen; // where the moves on the board's undo stack start from
+    private int startPly; // plies played before startFen, from its fullmove number and side to move
 
     // creates the chessboard, players, and starts the game with White's move
     public ChessGame() {
@@ -32,25 +33,55 @@ public class ChessGame {
         players = new Player[2];
         players[0] = new Player(Colour.WHITE);
         players[1] = new Player(Colour.BLACK);
-        currentPlayerIndex = 0;
         inCheck = Boolean.FALSE;
         gameIsOver = Boolean.FALSE;
-        inCheckPositions = new ArrayList<>();
-        blockPositions = new ArrayList<>();
-        inCheckLegalMoves = new ArrayList<>();
-        givingCheckPositions = new ArrayList<>();
-        lastMove = null;
-
-        whiteKingMoved = Boolean.FALSE;
-        blackKingMoved = Boolean.FALSE;
-        whiteKingsideRookMoved = Boolean.FALSE;
-        whiteQueensideRookMoved = Boolean.FALSE;
-        blackKingsideRookMoved = Boolean.FALSE;
-        blackQueensideRookMoved = Boolean.FALSE;
-
-        inCheckPawnPositions = new ArrayList<>();
+        legalMoves = new int[MoveGenerator.MAX_MOVES];
+
+        history = new PositionHistory(board.getPosition().getKey());
+        startFen = Fen.START_POSITION;
+        startPly = 0;
+        findLegalMoves();
+    }
+
+    // plays a packed move (see PackedMove) with the same checks and result codes
+    // as makeMove(String, String). Castling and promotion are translated into
+    // the square names that method expects
+    public Object makeMove(int move) {
+        return makeMove(sourceName(move), destinationName(move));
+    }
+
+    // the source square of a packed move in the notation makeMove(String, String)
+    // takes
+    public static String sourceName(int move) {
+        return squareName(PackedMove.from(move));
+    }
+
+    // the destination square of a packed move in the notation
+    // makeMove(String, String) takes
+    public static String destinationName(int move) {
+        return squareName(destinationSquare(move));
+    }
+
+    // the square destinationName names
+    private static int destinationSquare(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        if (PackedMove.isCastle(move)) {
+            // castling is given as the king's square and the rook's square
+            to = BitboardPosition.square(BitboardPosition.rowOf(from),
+                    PackedMove.flags(move) == PackedMove.KING_CASTLE ? 7 : 0);
+        } else if (PackedMove.isPromotion(move)) {
+            // the row of the destination picks the piece a pawn promotes to
+            int[] rows = BitboardPosition.rowOf(to) == 0 ? WHITE_PROMOTION_ROWS : BLACK_PROMOTION_ROWS;
+            to = BitboardPosition.square(rows[PackedMove.promotion(move)], BitboardPosition.colOf(to));
+        }
+        return to;
     }
 
+    // plays a move given as square names if it is one of the legal moves.
+    // Castling is given as the king's square and the rook's square, and a
+    // promotion either by the destination rows in WHITE_PROMOTION_ROWS and
+    // BLACK_PROMOTION_ROWS or, for a queen, as a plain move to the last row
     public Object makeMove(String from, String to) {
 
         if (gameIsOver) {
@@ -60,600 +91,314 @@ public class ChessGame {
         if (to == null) {
             return from;
         }
-        try {
-            Move currentMove = new Move(findPosition(from), findPosition(to));
-            Colour colour = currentPlayerIndex == 0 ? Colour.WHITE : Colour.BLACK;
-            Colour oppositeColour = currentPlayerIndex == 1 ? Colour.WHITE : Colour.BLACK;
-            int returnValue = 0;
-
-            // pawn-promotion
-            if (returnValue == 0) {
-                returnValue = pawnPromotion(currentMove, colour);
-            }
-
-            // en-passant
-            if (returnValue == 0) {
-                returnValue = enPassant(currentMove, colour);
-            }
-
-            // in check move
-            if (inCheck) {
-                returnValue = makeInCheckMove(currentMove, colour);
-            }
-
-            // castle
-            if (returnValue == 0) {
-                returnValue = castle(from, to, colour);
-            }
+        int move = findLegalMove(from, to);
+        if (move == PackedMove.NONE) {
+            return rejection(from);
+        }
+        Colour colour = board.getSideToMove();
+        board.getPosition().makeMove(move);
+        int returnValue = PackedMove.isCastle(move) ? (colour == Colour.WHITE ? 6 : 7) : 1;
+
+        findLegalMoves();
+        if (inCheck) {
+            returnValue = checkCheckmate(colour);
+        } else if (legalMoveCount == 0) {
+            gameIsOver = Boolean.TRUE;
+            returnValue = 8;
+        }
 
-            // move
-            if (returnValue == 0) {
-                returnValue = makeMove(currentMove, colour);
-                clearInCheckVariables();
-            }
+        // the board has already handed the turn over
+        boolean irreversible = board.getPosition().getHalfmoveClock() == 0;
+        return checkDraw(returnValue, irreversible);
+    }
 
-            if (returnValue > 0) {
-                if (kingInCheck(oppositeColour)) {
-                    inCheck = Boolean.TRUE;
+    public String[][] getBoard() {
+        return board.getBoard();
+    }
 
-                    findInCheckLegalMove(oppositeColour);
-                    returnValue = checkCheckmate(colour);
-                } else if (checkStalemate(oppositeColour)) {
-                    returnValue = 8;
-                }
+    // the moves the side to move may make, none once the game is over. They
+    // are worked out once per position and kept until a move is made
+    public List<LegalMove> getLegalMoves() {
+        if (legalMoveList == null) {
+            List<LegalMove> list = new ArrayList<>(legalMoveCount);
+            for (int i = 0; !gameIsOver && i < legalMoveCount; i++) {
+                int move = legalMoves[i];
+                list.add(new LegalMove(sourceName(move), destinationName(move), PackedMove.toUci(move)));
             }
+            legalMoveList = List.copyOf(list);
+        }
+        return legalMoveList;
+    }
 
-            if (returnValue > 0) {
-                currentPlayerIndex = (currentPlayerIndex + 1) % 2;
+    // the legal moves of the piece on a square, in the notation
+    // makeMove(String, String) takes
+    public List<LegalMove> getLegalMoves(String from) {
+        List<LegalMove> fromSquare = new ArrayList<>();
+        for (LegalMove move : getLegalMoves()) {
+            if (move.getFrom().equals(from)) {
+                fromSquare.add(move);
             }
-            return returnValue;
-        } catch (Throwable t) {
-            return t.toString() + "     |     " + from + to;
         }
+        return fromSquare;
+    }
 
+    public boolean isGameOver() {
+        return gameIsOver;
     }
 
-    public String[][] getBoard() {
-        return board.getBoard();
+    // gets a copy of the current position that can be searched without
+    // touching the game
+    public BitboardPosition copyPosition() {
+        BitboardPosition copy = new BitboardPosition();
+        copy.copyFrom(board.getPosition());
+        return copy;
     }
 
-    private boolean kingInCheck(Colour colour) {
+    // the keys of the positions reached since the last capture or pawn move,
+    // oldest first and ending with the current one
+    public long[] recentPositionKeys() {
+        return history.recentKeys();
+    }
 
-        Position kingPosition = findKing(colour);
-        Piece kingPiece = board.getPieceAt(kingPosition);
-        // In Order: rook, bishop, knight
-        int[] rowDirections = { -1, 1, 0, 0, -1, -1, 1, 1, -2, -2, -1, -1, 1, 1, 2, 2 };
-        int[] colDirections = { 0, 0, -1, 1, -1, 1, -1, 1, -1, 1, -2, 2, -2, 2, -1, 1 };
+    // gets a 64-bit key identifying the current position (pieces, side to move,
+    // castling rights and en passant square)
+    public long getPositionKey() {
+        return board.getPosition().getKey();
+    }
 
-        List<Position> cannotEvadePositions = new ArrayList<>();
-        List<Position> totalBlockPositions = new ArrayList<>();
-        List<Position> givingCheckTotalPositions = new ArrayList<>();
-        List<Position> positions = new ArrayList<>();
+    // writes the current position in FEN, numbering moves on from the start
+    // position's fullmove number
+    public String toFen() {
+        int ply = startPly + history.size() - 1;
+        return Fen.write(board.getPosition(), ply / 2 + 1);
+    }
 
-        List<Move> kingPossibleMoves = kingPiece.getPossibleMoves(kingPosition, board);
-        List<Position> kingPositions = new ArrayList<>();
-        for (Move kingMove : kingPossibleMoves) {
-            kingPositions.add(kingMove.getDestination());
-        }
+    // packs the board into 35 bytes: the 32 byte packed squares (one nibble per
+    // square, see BitboardPosition.packSquares) followed by the side to move,
+    // castling rights and en passant square (-1 for none)
+    public byte[] toPackedBoard() {
+        BitboardPosition position = board.getPosition();
+        byte[] packed = new byte[35];
+        position.packSquares(packed, 0);
+        packed[32] = (byte) position.getSideToMove();
+        packed[33] = (byte) position.getCastlingRights();
+        packed[34] = (byte) position.getEnPassantSquare();
+        return packed;
+    }
 
-        for (int i = 0; i < rowDirections.length; i++) {
-            int row = kingPosition.getRow() + rowDirections[i];
-            int col = kingPosition.getCol() + colDirections[i];
-            int count = -1;
-            Position newPosition = new Position(row, col);
-
-            // positions = ((i == 4) || (i == 8)) ? new ArrayList<>() : positions;
-            positions = new ArrayList<>();
-
-            // checks if the position is valid
-            while (board.isValidPosition(newPosition)) {
-                count += 1;
-                positions.add(newPosition);
-                Piece givingCheck = board.getPieceAt(newPosition);
-
-                if (givingCheck == null) {
-                    if (i >= 8) {
-                        break;
-                    }
-                    row += rowDirections[i];
-                    col += colDirections[i];
-                    newPosition = new Position(row, col);
-                } else if (givingCheck.getColour() == colour) {
-                    break;
-                } else {
-                    if ((givingCheck instanceof Rook || givingCheck instanceof Queen) && (i < 4)) {
-                        cannotEvadePositions.add(new Position(kingPosition.getRow() + rowDirections[i],
-                                kingPosition.getCol() + colDirections[i]));
-                        int row2 = -1 * rowDirections[i];
-                        int col2 = -1 * colDirections[i];
-                        cannotEvadePositions
-                                .add(new Position(kingPosition.getRow() + row2, kingPosition.getCol() + col2));
-                        cannotEvadePositions.addAll(positions);
-                        totalBlockPositions.addAll(positions);
-                        givingCheckTotalPositions.add(newPosition);
-                    } else if ((givingCheck instanceof Bishop || givingCheck instanceof Queen) && (4 <= i) && (i < 8)) {
-                        cannotEvadePositions.add(new Position(kingPosition.getRow() + rowDirections[i],
-                                kingPosition.getCol() + colDirections[i]));
-                        int row2 = -1 * rowDirections[i];
-                        int col2 = -1 * colDirections[i];
-                        cannotEvadePositions
-                                .add(new Position(kingPosition.getRow() + row2, kingPosition.getCol() + col2));
-                        cannotEvadePositions.addAll(positions);
-                        totalBlockPositions.addAll(positions);
-                        givingCheckTotalPositions.add(newPosition);
-                    } else if ((count == 0 && givingCheck instanceof Pawn
-                            && ((colour == Colour.WHITE && (i == 4 || i == 5))
-                                    || (colour == Colour.BLACK && (i == 6 || i == 7))))) {
-                        cannotEvadePositions.add(newPosition);
-                        totalBlockPositions.add(newPosition);
-                        givingCheckTotalPositions.add(newPosition);
-                    } else if (givingCheck instanceof King && (i < 8) && count == 0) {
-                        cannotEvadePositions.add(newPosition);
-                        totalBlockPositions.add(newPosition);
-                        givingCheckTotalPositions.add(newPosition);
-                    } else if (givingCheck instanceof Knight && (i >= 8)) {
-                        cannotEvadePositions.add(newPosition);
-                        totalBlockPositions.add(newPosition);
-                        givingCheckTotalPositions.add(newPosition);
-                    }
-                    break;
-                }
+    // replays a PGN game from its start position; throws an
+    // IllegalArgumentException naming the first move the game does not accept
+    public static ChessGame fromPgn(PgnGame pgnGame) {
+        ChessGame chessGame = fromFen(pgnGame.getStartFen());
+        List<String> moves = pgnGame.getMoves();
+        for (int i = 0; i < moves.size(); i++) {
+            Object result;
+            try {
+                result = chessGame.makeMove(San.parse(chessGame.board.getPosition(), moves.get(i)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Move " + (i + 1) + ": " + e.getMessage());
             }
-        }
-
-        boolean returnValue = givingCheckTotalPositions.isEmpty() ? Boolean.FALSE : Boolean.TRUE;
-
-        if (givingCheckPositions.isEmpty()) {
-            for (int i = 0; i <= 7; i++) {
-                for (int j = 0; j <= 7; j++) {
-                    Position moveCanCheck = new Position(i, j);
-                    if (!(board.isValidPosition(moveCanCheck))) {
-                        continue;
-                    }
-                    Piece moveCanCheckPiece = board.getPieceAt(moveCanCheck);
-                    if (moveCanCheckPiece != null && moveCanCheckPiece.getColour() != colour) {
-                        List<Position> piecePositions = new ArrayList<>();
-                        if (moveCanCheckPiece.getColour() == Colour.WHITE && moveCanCheckPiece instanceof Pawn) {
-                            if (board.isValidPosition(new Position(i - 1, j - 1))) {
-                                piecePositions.add(new Position(i - 1, j - 1));
-                            }
-                            if (board.isValidPosition(new Position(i - 1, j + 1))) {
-                                piecePositions.add(new Position(i - 1, j + 1));
-                            }
-
-                        } else if (moveCanCheckPiece instanceof Pawn) {
-                            if (board.isValidPosition(new Position(i + 1, j - 1))) {
-                                piecePositions.add(new Position(i + 1, j - 1));
-                            }
-                            if (board.isValidPosition(new Position(i + 1, j + 1))) {
-                                piecePositions.add(new Position(i + 1, j + 1));
-                            }
-                        } else {
-                            List<Move> pieceMoves = moveCanCheckPiece.getPossibleMoves(moveCanCheck, board);
-                            for (Move pieceMove : pieceMoves) {
-                                piecePositions.add(pieceMove.getDestination());
-                            }
-                        }
-                        piecePositions.retainAll(kingPositions);
-                        cannotEvadePositions.addAll(piecePositions);
-
-                    }
-                }
+            if (!(result instanceof Integer) || (Integer) result <= 0) {
+                throw new IllegalArgumentException("Move " + (i + 1) + ": " + moves.get(i) + " was not accepted");
             }
-
-            inCheckPositions.addAll(cannotEvadePositions);
-            blockPositions.addAll(totalBlockPositions);
-            givingCheckPositions.addAll(givingCheckTotalPositions);
-
         }
-        return returnValue;
+        return chessGame;
     }
 
-    private int checkCheckmate(Colour colour) {
-        if (colour == Colour.WHITE && inCheckLegalMoves.isEmpty()) {
-            gameIsOver = Boolean.TRUE;
-            return 2;
+    // exports the moves played so far as a PGN game
+    public PgnGame toPgn() {
+        PgnGame pgnGame = new PgnGame();
+        if (!startFen.equals(Fen.START_POSITION)) {
+            pgnGame.setTag("SetUp", "1");
+            pgnGame.setTag("FEN", startFen);
         }
-        if (colour == Colour.BLACK && inCheckLegalMoves.isEmpty()) {
-            gameIsOver = Boolean.TRUE;
-            return 3;
+        BitboardPosition position = board.getPosition();
+        BitboardPosition replay = new BitboardPosition();
+        Fen.load(startFen, replay);
+        for (int i = 0; i < position.getUndoDepth(); i++) {
+            int move = position.moveAt(i);
+            pgnGame.addMove(San.write(replay, move));
+            replay.makeMove(move);
         }
-        return (colour == Colour.WHITE ? 5 : 4);
+        pgnGame.setResult(getResult());
+        return pgnGame;
     }
 
-    private boolean checkStalemate(Colour colour) {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Position currentPiecePosition = new Position(i, j);
-                Piece currentPiece = board.getPieceAt(currentPiecePosition);
-                if (currentPiece != null && currentPiece.getColour() == colour) {
-                    Move thisLastMove = board.getLastMove();
-                    String lastSpecialMove = board.getLastSpecialMove();
-                    Piece lastSourcePiece = board.getSourcePiece();
-                    Piece lastDestinationPiece = board.getDestinationPiece();
-                    List<Move> currentPieceMoves = currentPiece.getPossibleMoves(currentPiecePosition, board);
-
-                    for (Move currentMove : currentPieceMoves) {
-                        board.makeMove(currentMove);
-                        if (!kingInCheck(colour)) {
-                            board.undoMove();
-                            board.replaceLastMove(thisLastMove, lastSpecialMove, lastSourcePiece, lastDestinationPiece);
-                            clearInCheckVariables();
-                            return Boolean.FALSE;
-                        }
-                        board.undoMove();
-                    }
-
-                }
-            }
+    // the result in PGN form: "1-0" or "0-1" after checkmate, "1/2-1/2" after
+    // a draw and "*" while the game goes on. A checkmated side is the side to
+    // move, in check and without a legal move
+    public String getResult() {
+        if (!gameIsOver) {
+            return "*";
         }
-
-        gameIsOver = Boolean.TRUE;
-        return Boolean.TRUE;
+        if (inCheck && legalMoveCount == 0) {
+            return board.getSideToMove() == Colour.WHITE ? "0-1" : "1-0";
+        }
+        return "1/2-1/2";
     }
 
-    private int makeInCheckMove(Move move, Colour colour) {
-
-        Move uncheckedMove = move;
-        Position sourcePosition = uncheckedMove.getSource();
-
-        if (inCheckLegalMoves.contains(uncheckedMove)) {
-            board.makeMove(uncheckedMove);
-            clearInCheckVariables();
-            whiteKingMoved = !whiteKingMoved ? sourcePosition.equals(new Position(7, 4)) : whiteKingMoved;
-            blackKingMoved = !blackKingMoved ? sourcePosition.equals(new Position(0, 4)) : blackKingMoved;
-            whiteKingsideRookMoved = !whiteKingsideRookMoved ? sourcePosition.equals(new Position(7, 7))
-                    : whiteKingsideRookMoved;
-            whiteQueensideRookMoved = !whiteQueensideRookMoved ? sourcePosition.equals(new Position(7, 0))
-                    : whiteQueensideRookMoved;
-            blackKingsideRookMoved = !blackKingsideRookMoved ? sourcePosition.equals(new Position(0, 7))
-                    : blackKingsideRookMoved;
-            blackQueensideRookMoved = !blackQueensideRookMoved ? sourcePosition.equals(new Position(0, 0))
-                    : blackQueensideRookMoved;
-            lastMove = move;
-            return 1;
-        } else {
-            return (colour == Colour.WHITE ? -4 : -5);
+    // writes the game into a compact snapshot: a version byte, the status
+    // flags and the key of the current position, then the FEN the game started
+    // from and every move made since, packed (see PackedMove), so the whole
+    // history survives
+    public byte[] toSnapshot() {
+        BitboardPosition position = board.getPosition();
+        byte[] fen = startFen.getBytes(StandardCharsets.US_ASCII);
+        int moveCount = position.getUndoDepth();
+        ByteBuffer snapshot = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE + 2 + fen.length + 4 + moveCount * 4);
+        snapshot.put(SNAPSHOT_VERSION);
+        snapshot.put((byte) ((gameIsOver ? 1 : 0) | (inCheck ? 2 : 0)));
+        snapshot.putLong(position.getKey());
+        snapshot.putShort((short) fen.length).put(fen);
+        snapshot.putInt(moveCount);
+        for (int i = 0; i < moveCount; i++) {
+            snapshot.putInt(position.moveAt(i));
         }
-
+        return snapshot.array();
     }
 
-    private void findInCheckLegalMove(Colour colour) {
-
-        if (givingCheckPositions.size() == 1) {
-            int positionIndex = 0;
-            Position kingPosition = findKing(colour);
-            Piece kingPiece = board.getPieceAt(kingPosition);
-
-            while (positionIndex < blockPositions.size()) {
-                for (int blockCheckIndex = 0; blockCheckIndex <= 63; blockCheckIndex++) {
-                    Position currentPosition = new Position(Math.floorDiv(blockCheckIndex, 8), blockCheckIndex % 8);
-                    Piece currentPiece = board.getPieceAt(currentPosition);
-                    Move blockMove;
-                    if (currentPiece != null && currentPiece.getColour() == colour
-                            && currentPiece.getPossibleMoves(currentPosition, board).contains(
-                                    blockMove = new Move(currentPosition, blockPositions.get(positionIndex)))) {
-                        if (!(currentPiece instanceof King)) {
-                            inCheckLegalMoves.add(blockMove);
-                        }
-                    }
-                }
-                positionIndex += 1;
+    // rebuilds a game from toSnapshot output. The moves are made on the
+    // position directly rather than checked again, and the position they
+    // reach must have the key the snapshot recorded
+    public static ChessGame fromSnapshot(byte[] snapshot) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+            if (buffer.get() != SNAPSHOT_VERSION) {
+                throw new IllegalArgumentException("Unsupported game snapshot.");
             }
-            List<Move> kingMoves = kingPiece.getPossibleMoves(kingPosition, board);
-            for (Move kingMove : kingMoves) {
-                if (givingCheckPositions.contains(kingMove.getDestination())) {
-                    Move thisLastMove = board.getLastMove();
-                    String lastSpecialMove = board.getLastSpecialMove();
-                    Piece lastSourcePiece = board.getSourcePiece();
-                    Piece lastDestinationPiece = board.getDestinationPiece();
-                    board.makeMove(kingMove);
-                    if (!kingInCheck(colour)) {
-                        inCheckLegalMoves.add(kingMove);
-                    }
-                    board.undoMove();
-                    board.replaceLastMove(thisLastMove, lastSpecialMove, lastSourcePiece, lastDestinationPiece);
-                    lastMove = thisLastMove;
-                } else if (!(inCheckPositions.contains(kingMove.getDestination()))) {
-                    inCheckLegalMoves.add(kingMove);
-                }
+            boolean over = (buffer.get() & 1) != 0;
+            long key = buffer.getLong();
+            byte[] fen = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(fen);
+            int moveCount = buffer.getInt();
+            if (moveCount < 0 || buffer.remaining() != moveCount * 4) {
+                throw new IllegalArgumentException("Unsupported game snapshot.");
+            }
+
+            ChessGame chessGame = fromFen(new String(fen, StandardCharsets.US_ASCII));
+            BitboardPosition position = chessGame.board.getPosition();
+            for (int i = 0; i < moveCount; i++) {
+                position.makeMove(buffer.getInt());
+                chessGame.history.add(position.getKey(), position.getHalfmoveClock() == 0);
             }
-            // throw new IllegalArgumentException(errors.toString());
-        } else {
-            Position kingPosition = findKing(colour);
-            Piece kingPiece = board.getPieceAt(kingPosition);
-
-            List<Move> kingMoves = kingPiece.getPossibleMoves(kingPosition, board);
-            for (Move kingMove : kingMoves) {
-                if (givingCheckPositions.contains(kingMove.getDestination())) {
-                    Move thisLastMove = board.getLastMove();
-                    String lastSpecialMove = board.getLastSpecialMove();
-                    Piece lastSourcePiece = board.getSourcePiece();
-                    Piece lastDestinationPiece = board.getDestinationPiece();
-                    board.makeMove(kingMove);
-                    if (!kingInCheck(colour)) {
-                        inCheckLegalMoves.add(kingMove);
-                    }
-                    board.undoMove();
-                    board.replaceLastMove(thisLastMove, lastSpecialMove, lastSourcePiece, lastDestinationPiece);
-                    lastMove = thisLastMove;
-                } else if (!(inCheckPositions.contains(kingMove.getDestination()))) {
-                    inCheckLegalMoves.add(kingMove);
-                }
+            if (position.getKey() != key) {
+                throw new IllegalArgumentException("Game snapshot does not reach its recorded position.");
             }
+            chessGame.gameIsOver = over;
+            chessGame.findLegalMoves();
+            return chessGame;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Unsupported game snapshot.", e);
         }
     }
 
-    private int makeMove(Move move, Colour colour) {
-        Move uncheckedMove = move;
-        Position sourcePosition = uncheckedMove.getSource();
-        Piece source = board.getPieceAt(sourcePosition);
-        if ((source.getColour() == colour)
-                && (source.getPossibleMoves(uncheckedMove.getSource(), board).contains(uncheckedMove))) {
-            // simulate move
-            Move thisLastMove = board.getLastMove();
-            String lastSpecialMove = board.getLastSpecialMove();
-            Piece lastSourcePiece = board.getSourcePiece();
-            Piece lastDestinationPiece = board.getDestinationPiece();
-            board.makeMove(uncheckedMove);
-            if (kingInCheck(colour)) {
-                clearInCheckVariables();
-                board.undoMove();
-                board.replaceLastMove(thisLastMove, lastSpecialMove, lastSourcePiece, lastDestinationPiece);
-                return -3;// invalid move
-            } else {
-                whiteKingMoved = !whiteKingMoved ? sourcePosition.equals(new Position(7, 4)) : whiteKingMoved;
-                blackKingMoved = !blackKingMoved ? sourcePosition.equals(new Position(0, 4)) : blackKingMoved;
-                whiteKingsideRookMoved = !whiteKingsideRookMoved ? sourcePosition.equals(new Position(7, 7))
-                        : whiteKingsideRookMoved;
-                whiteQueensideRookMoved = !whiteQueensideRookMoved ? sourcePosition.equals(new Position(7, 0))
-                        : whiteQueensideRookMoved;
-                blackKingsideRookMoved = !blackKingsideRookMoved ? sourcePosition.equals(new Position(0, 7))
-                        : blackKingsideRookMoved;
-                blackQueensideRookMoved = !blackQueensideRookMoved ? sourcePosition.equals(new Position(0, 0))
-                        : blackQueensideRookMoved;
-                lastMove = move;
-                // valid move
-                return 1;
-            }
-        }
-        return source.getColour() == colour ? -3 : -2;
+    // starts a game from a position written in FEN; throws an
+    // IllegalArgumentException if the FEN is not valid
+    public static ChessGame fromFen(String fen) {
+        ChessGame chessGame = new ChessGame();
+        int fullmoveNumber = Fen.load(fen, chessGame.board.getPosition());
+        chessGame.history = new PositionHistory(chessGame.getPositionKey(),
+                chessGame.board.getPosition().getHalfmoveClock());
+        chessGame.startFen = fen;
+        chessGame.startPly = 2 * (fullmoveNumber - 1)
+                + (chessGame.board.getSideToMove() == Colour.BLACK ? 1 : 0);
+        chessGame.findLegalMoves();
+        return chessGame;
+    }
+
+    // works out whether the side to move is in check and what it may do,
+    // once for each position the game reaches. Check, checkmate and
+    // stalemate are all read from this
+    void findLegalMoves() {
+        inCheck = kingInCheck(board.getSideToMove());
+        legalMoveCount = MoveGenerator.generateLegal(board.getPosition(), legalMoves);
+        legalMoveList = null;
+    }
+
+    // checks if the king of the given colour is attacked
+    boolean kingInCheck(Colour colour) {
+        return board.getPosition().isInCheck(colour.ordinal());
     }
 
-    private int enPassant(Move move, Colour colour) {
-        Position piecePosition = move.getSource();
-        Piece piece = board.getPieceAt(piecePosition);
-        if (lastMove == null) {
-            return 0;
+    // records the position a move reached and ends the game on threefold
+    // repetition (9) or after fifty moves by each side without a capture or pawn
+    // move (10); checkmate and stalemate take priority
+    private int checkDraw(int returnValue, boolean irreversible) {
+        int repetitions = history.add(board.getPosition().getKey(), irreversible);
+        if (gameIsOver) {
+            return returnValue;
         }
-        Piece lastMovePiece = board.getPieceAt(lastMove.getDestination());
-        int returnValue = 0;
-        if (piece instanceof Pawn && lastMovePiece instanceof Pawn) {
-            if (colour != lastMovePiece.getColour() && colour == Colour.WHITE
-                    && (lastMove.getSource().getRow() == 1 && lastMove.getDestination().getRow() == 3)
-                    && ((lastMove.getDestination().getCol() - piecePosition.getCol() == 1)
-                            || (lastMove.getDestination().getCol() - piecePosition.getCol() == -1))
-                    && (lastMove.getDestination().getRow() == piecePosition.getRow())
-                    && (move.getDestination().equals(new Position(lastMove.getDestination().getRow() - 1,
-                            lastMove.getDestination().getCol())))
-                    && (lastMove.getSource().equals(new Position(lastMove.getDestination().getRow() - 2,
-                            lastMove.getDestination().getCol())))) {
-                Move thisLastMove = board.getLastMove();
-                String lastSpecialMove = board.getLastSpecialMove();
-                Piece lastSourcePiece = board.getSourcePiece();
-                Piece lastDestinationPiece = board.getDestinationPiece();
-                board.enPassant(piecePosition, lastMove.getDestination());
-                if (kingInCheck(colour)) {
-                    clearInCheckVariables();
-                    board.undoMove();
-                    board.replaceLastMove(thisLastMove, lastSpecialMove, lastSourcePiece, lastDestinationPiece);
-                    returnValue = -3;
-                } else {
-                    returnValue = 1;
-                }
-            }
-            if (colour != lastMovePiece.getColour() && colour == Colour.BLACK
-                    && (lastMove.getSource().getRow() == 6 && lastMove.getDestination().getRow() == 4)
-                    && ((lastMove.getDestination().getCol() - piecePosition.getCol() == 1)
-                            || (lastMove.getDestination().getCol() - piecePosition.getCol() == -1))
-                    && (lastMove.getDestination().getRow() == piecePosition.getRow())
-                    && (move.getDestination().equals(new Position(lastMove.getDestination().getRow() + 1,
-                            lastMove.getDestination().getCol())))
-                    && (lastMove.getSource().equals(new Position(lastMove.getDestination().getRow() + 2,
-                            lastMove.getDestination().getCol())))) {
-                Move thisLastMove = board.getLastMove();
-                String lastSpecialMove = board.getLastSpecialMove();
-                Piece lastSourcePiece = board.getSourcePiece();
-                Piece lastDestinationPiece = board.getDestinationPiece();
-                board.enPassant(piecePosition, lastMove.getDestination());
-                if (kingInCheck(colour)) {
-                    clearInCheckVariables();
-                    board.undoMove();
-                    board.replaceLastMove(thisLastMove, lastSpecialMove, lastSourcePiece, lastDestinationPiece);
-                    returnValue = -3;
-                } else {
-                    returnValue = 1;
-                }
-            }
+        if (repetitions >= 3) {
+            gameIsOver = Boolean.TRUE;
+            return 9;
+        }
+        if (history.getHalfmoveClock() >= 100) {
+            gameIsOver = Boolean.TRUE;
+            return 10;
         }
         return returnValue;
     }
 
-    private int castle(String from, String to, Colour colour) {
-        if (!whiteKingMoved && currentPlayerIndex == 0 && from.equals("E8")) {
-            if (!whiteKingsideRookMoved && to.equals("H8")) {
-                Move thisLastMove = board.getLastMove();
-                String lastSpecialMove = board.getLastSpecialMove();
-                Piece lastSourcePiece = board.getSourcePiece();
-                Piece lastDestinationPiece = board.getDestinationPiece();
-                Boolean success = board.whiteKingsideCastle();
-                if (success) {
-                    if (kingInCheck(colour)) {
-                        clearInCheckVariables();
-                        board.undoMove();
-                        board.replaceLastMove(thisLastMove, lastSpecialMove, lastSourcePiece, lastDestinationPiece);
-                        return -3;
-                    } else {
-                        whiteKingMoved = Boolean.TRUE;
-                        return 6;
-                    }
-                } else {
-                    return 0;
-                }
-            }
-            if (!whiteQueensideRookMoved && to.equals("A8")) {
-                Move thisLastMove = board.getLastMove();
-                String lastSpecialMove = board.getLastSpecialMove();
-                Piece lastSourcePiece = board.getSourcePiece();
-                Piece lastDestinationPiece = board.getDestinationPiece();
-                Boolean success = board.whiteQueensideCastle();
-                if (success) {
-                    if (kingInCheck(colour)) {
-                        clearInCheckVariables();
-                        board.undoMove();
-                        board.replaceLastMove(thisLastMove, lastSpecialMove, lastSourcePiece, lastDestinationPiece);
-                        return -3;
-                    } else {
-                        whiteKingMoved = Boolean.TRUE;
-                        return 6;
-                    }
-                } else {
-                    return 0;
-                }
-            }
-        }
-        if (!blackKingMoved && currentPlayerIndex == 1 && from.equals("E1")) {
-            if (!blackKingsideRookMoved && to.equals("H1")) {
-                Move thisLastMove = board.getLastMove();
-                String lastSpecialMove = board.getLastSpecialMove();
-                Piece lastSourcePiece = board.getSourcePiece();
-                Piece lastDestinationPiece = board.getDestinationPiece();
-                Boolean success = board.blackKingsideCastle();
-                if (success) {
-                    if (kingInCheck(colour)) {
-                        clearInCheckVariables();
-                        board.undoMove();
-                        board.replaceLastMove(thisLastMove, lastSpecialMove, lastSourcePiece, lastDestinationPiece);
-                        return -3;
-                    } else {
-                        blackKingMoved = Boolean.TRUE;
-                        return 7;
-                    }
-                } else {
-                    return 0;
-                }
-            }
-            if (!blackQueensideRookMoved && to.equals("A1")) {
-                Move thisLastMove = board.getLastMove();
-                String lastSpecialMove = board.getLastSpecialMove();
-                Piece lastSourcePiece = board.getSourcePiece();
-                Piece lastDestinationPiece = board.getDestinationPiece();
-                Boolean success = board.blackQueensideCastle();
-                if (success) {
-                    if (kingInCheck(colour)) {
-                        clearInCheckVariables();
-                        board.undoMove();
-                        board.replaceLastMove(thisLastMove, lastSpecialMove, lastSourcePiece, lastDestinationPiece);
-                        return -3;
-                    } else {
-                        blackKingMoved = Boolean.TRUE;
-                        return 7;
-                    }
-                } else {
-                    return 0;
-                }
-            }
+    private int checkCheckmate(Colour colour) {
+        if (legalMoveCount == 0) {
+            gameIsOver = Boolean.TRUE;
+            return colour == Colour.WHITE ? 2 : 3;
         }
-        return 0;
+        return (colour == Colour.WHITE ? 5 : 4);
     }
 
-    public int pawnPromotion(Move move, Colour colour) {
-        Piece pawnPromoting = board.getPieceAt(move.getSource());
-        if (colour == Colour.WHITE && pawnPromoting instanceof Pawn && pawnPromoting.getColour() == Colour.WHITE
-                && (move.getDestination().getRow() >= 2 && move.getDestination().getRow() <= 5)
-                && pawnPromoting.getPossibleMoves(move.getSource(), board)
-                        .contains(new Move(move.getSource(), new Position(0, move.getDestination().getCol())))) {
-            Move promotionMove = new Move(move.getSource(), new Position(0, move.getDestination().getCol()));
-            Move thisLastMove = board.getLastMove();
-            String lastSpecialMove = board.getLastSpecialMove();
-            Piece lastSourcePiece = board.getSourcePiece();
-            Piece lastDestinationPiece = board.getDestinationPiece();
-            switch (move.getDestination().getRow()) {
-                case 2:
-                    board.pawnPromotion(promotionMove, new Bishop(Colour.WHITE));
-                    break;
-                case 3:
-                    board.pawnPromotion(promotionMove, new Knight(Colour.WHITE));
-                    break;
-                case 4:
-                    board.pawnPromotion(promotionMove, new Rook(Colour.WHITE));
-                    break;
-                case 5:
-                    board.pawnPromotion(promotionMove, new Queen(Colour.WHITE));
-                    break;
-            }
-            if (kingInCheck(colour)) {
-                clearInCheckVariables();
-                board.undoMove();
-                board.replaceLastMove(thisLastMove, lastSpecialMove, lastSourcePiece, lastDestinationPiece);
-                return -3;
-            } else {
-                return 1;
-            }
-        } else if (colour == Colour.BLACK && pawnPromoting instanceof Pawn && pawnPromoting.getColour() == Colour.BLACK
-                && (move.getDestination().getRow() >= 3 && move.getDestination().getRow() <= 6)
-                && pawnPromoting.getPossibleMoves(move.getSource(), board)
-                        .contains(new Move(move.getSource(), new Position(7, move.getDestination().getCol())))) {
-            Move promotionMove = new Move(move.getSource(), new Position(7, move.getDestination().getCol()));
-            Move thisLastMove = board.getLastMove();
-            String lastSpecialMove = board.getLastSpecialMove();
-            Piece lastSourcePiece = board.getSourcePiece();
-            Piece lastDestinationPiece = board.getDestinationPiece();
-            switch (move.getDestination().getRow()) {
-                case 6:
-                    board.pawnPromotion(promotionMove, new Bishop(Colour.BLACK));
-                    break;
-                case 5:
-                    board.pawnPromotion(promotionMove, new Knight(Colour.BLACK));
-                    break;
-                case 4:
-                    board.pawnPromotion(promotionMove, new Rook(Colour.BLACK));
-                    break;
-                case 3:
-                    board.pawnPromotion(promotionMove, new Queen(Colour.BLACK));
-                    break;
+    // the legal move named by two squares, or PackedMove.NONE
+    private int findLegalMove(String from, String to) {
+        int source = parseSquare(from);
+        int target = parseSquare(to);
+        if (source == BitboardPosition.NO_SQUARE || target == BitboardPosition.NO_SQUARE) {
+            return PackedMove.NONE;
+        }
+        for (int i = 0; i < legalMoveCount; i++) {
+            int move = legalMoves[i];
+            if (PackedMove.from(move) != source) {
+                continue;
             }
-            if (kingInCheck(colour)) {
-                clearInCheckVariables();
-                board.undoMove();
-                board.replaceLastMove(thisLastMove, lastSpecialMove, lastSourcePiece, lastDestinationPiece);
-                return -3;
-            } else {
-                return 1;
+            if (destinationSquare(move) == target || (PackedMove.isPromotion(move)
+                    && PackedMove.promotion(move) == BitboardPosition.QUEEN && PackedMove.to(move) == target)) {
+                return move;
             }
         }
-        return 0;
+        return PackedMove.NONE;
     }
 
-    public void clearInCheckVariables() {
-        inCheck = Boolean.FALSE;
-        inCheckPositions.clear();
-        blockPositions.clear();
-        inCheckLegalMoves.clear();
-        givingCheckPositions.clear();
-        inCheckPawnPositions.clear();
+    // the code a move that is not legal is refused with: in check (-4 for
+    // white, -5 for black), a piece of the other side (-2), or anything else
+    // (-3)
+    private int rejection(String from) {
+        if (inCheck) {
+            return board.getSideToMove() == Colour.WHITE ? -4 : -5;
+        }
+        int square = parseSquare(from);
+        BitboardPosition position = board.getPosition();
+        if (square != BitboardPosition.NO_SQUARE && position.pieceAt(square) != BitboardPosition.NO_PIECE
+                && BitboardPosition.colourOf(position.pieceAt(square)) != position.getSideToMove()) {
+            return -2;
+        }
+        return -3;
     }
 
     public Position findKing(Colour colour) {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Piece currentPiece = board.getPieceAt(new Position(i, j));
-                if (currentPiece instanceof King && currentPiece.getColour() == colour) {
-                    return new Position(i, j);
-                }
-            }
+        return board.findKing(colour);
+    }
+
+    // names a square the way findPosition reads it, e.g. "E7" for row 6, column 4
+    private static String squareName(int square) {
+        return "" + (char) ('A' + BitboardPosition.colOf(square)) + (char) ('1' + BitboardPosition.rowOf(square));
+    }
+
+    // reads a square name like "E7"; NO_SQUARE if it is not one
+    private static int parseSquare(String name) {
+        if (name == null || name.length() != 2 || name.charAt(0) < 'A' || name.charAt(0) > 'H'
+                || name.charAt(1) < '1' || name.charAt(1) > '8') {
+            return BitboardPosition.NO_SQUARE;
         }
-        return null;
+        return BitboardPosition.square(name.charAt(1) - '1', name.charAt(0) - 'A');
     }
 
     public Position findPosition(String input) {
@@ -0,0 +1,40 @@
+package com.chess.model;
+
+// a move chosen by the engine (in the same notation as MoveRequest) with the
+// result code of making it, the engine's score for it in centipawns from the
+// mover's point of view and how many plies deep it searched
+public class EngineMove {
+    private String from;
+    private String to;
+    private int result;
+    private int score;
+    private int depth;
+
+    public EngineMove(String from, String to, int result, int score, int depth) {
+        this.from = from;
+        this.to = to;
+        this.result = result;
+        this.score = score;
+        this.depth = depth;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public int getResult() {
+        return result;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+}
@@ -0,0 +1,204 @@
+package com.chess.model;
+
+// reads and writes positions in Forsyth-Edwards Notation. FEN lists ranks from
+// 8 down to 1, which are our rows 0 to 7, and files a to h are columns 0 to 7
+public final class Fen {
+    public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECE_LETTERS = "PNBRQK";
+    private static final long BACK_ROWS = 0xFF000000000000FFL; // rows 0 and 7
+
+    private Fen() {
+    }
+
+    // replaces the contents of a position with the one described by a FEN
+    // string. A position no game could reach (not one king each, pawns on the
+    // back rows, the side that just moved in check, or negative clocks) is
+    // refused with an IllegalArgumentException; castling rights whose king or
+    // rook has left its square and an en passant square no pawn just skipped
+    // are dropped. Returns the fullmove number, which the position does not
+    // keep (1 if the FEN leaves it out)
+    public static int load(String fen, BitboardPosition position) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+        position.clear();
+
+        // pieces
+        int row = 0;
+        int col = 0;
+        for (int i = 0; i < fields[0].length(); i++) {
+            char c = fields[0].charAt(i);
+            if (c == '/') {
+                if (col != 8) {
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+                row++;
+                col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int type = PIECE_LETTERS.indexOf(Character.toUpperCase(c));
+                if (type < 0 || row > 7 || col > 7) {
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+                int colour = Character.isUpperCase(c) ? BitboardPosition.WHITE : BitboardPosition.BLACK;
+                position.putPiece(BitboardPosition.square(row, col), BitboardPosition.code(colour, type));
+                col++;
+            }
+        }
+        if (row != 7 || col != 8
+                || Long.bitCount(position.getPieces(BitboardPosition.WHITE, BitboardPosition.KING)) != 1
+                || Long.bitCount(position.getPieces(BitboardPosition.BLACK, BitboardPosition.KING)) != 1
+                || ((position.getPieces(BitboardPosition.WHITE, BitboardPosition.PAWN)
+                        | position.getPieces(BitboardPosition.BLACK, BitboardPosition.PAWN)) & BACK_ROWS) != 0) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        // side to move
+        if (fields[1].equals("w")) {
+            position.setSideToMove(BitboardPosition.WHITE);
+        } else if (fields[1].equals("b")) {
+            position.setSideToMove(BitboardPosition.BLACK);
+        } else {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+        if (position.isInCheck(position.getSideToMove() ^ 1)) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        // castling rights
+        int rights = 0;
+        if (!fields[2].equals("-")) {
+            for (int i = 0; i < fields[2].length(); i++) {
+                int right = "KQkq".indexOf(fields[2].charAt(i));
+                if (right < 0) {
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+                rights |= 1 << right;
+            }
+        }
+        position.setCastlingRights(rights & possibleCastlingRights(position));
+
+        // en passant square
+        if (!fields[3].equals("-")) {
+            int square = parseSquare(fields[3]);
+            if (isEnPassantPossible(position, square)) {
+                position.setEnPassantSquare(square);
+            }
+        }
+
+        // halfmove clock and fullmove number (both optional)
+        if (fields.length > 4) {
+            position.setHalfmoveClock(parseCount(fields[4], 0, fen));
+        }
+        return fields.length > 5 ? parseCount(fields[5], 1, fen) : 1;
+    }
+
+    // the castling rights whose king and rook are still on their squares
+    private static int possibleCastlingRights(BitboardPosition position) {
+        int rights = 0;
+        int whiteRook = BitboardPosition.code(BitboardPosition.WHITE, BitboardPosition.ROOK);
+        int blackRook = BitboardPosition.code(BitboardPosition.BLACK, BitboardPosition.ROOK);
+        if (position.kingSquare(BitboardPosition.WHITE) == BitboardPosition.square(7, 4)) {
+            if (position.pieceAt(BitboardPosition.square(7, 7)) == whiteRook) {
+                rights |= BitboardPosition.WHITE_KINGSIDE;
+            }
+            if (position.pieceAt(BitboardPosition.square(7, 0)) == whiteRook) {
+                rights |= BitboardPosition.WHITE_QUEENSIDE;
+            }
+        }
+        if (position.kingSquare(BitboardPosition.BLACK) == BitboardPosition.square(0, 4)) {
+            if (position.pieceAt(BitboardPosition.square(0, 7)) == blackRook) {
+                rights |= BitboardPosition.BLACK_KINGSIDE;
+            }
+            if (position.pieceAt(BitboardPosition.square(0, 0)) == blackRook) {
+                rights |= BitboardPosition.BLACK_QUEENSIDE;
+            }
+        }
+        return rights;
+    }
+
+    // whether a pawn of the side that just moved can have skipped the square
+    // with a two step push: the square and the one it started on are empty,
+    // and the pawn stands just past it
+    private static boolean isEnPassantPossible(BitboardPosition position, int square) {
+        int mover = position.getSideToMove() ^ 1;
+        int row = mover == BitboardPosition.WHITE ? 5 : 2;
+        int step = mover == BitboardPosition.WHITE ? -8 : 8; // the way the pawn moved
+        return BitboardPosition.rowOf(square) == row
+                && position.isEmpty(square) && position.isEmpty(square - step)
+                && position.pieceAt(square + step) == BitboardPosition.code(mover, BitboardPosition.PAWN);
+    }
+
+    private static int parseCount(String field, int min, String fen) {
+        try {
+            int count = Integer.parseInt(field);
+            if (count >= min) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // refused below
+        }
+        throw new IllegalArgumentException("Invalid FEN: " + fen);
+    }
+
+    // writes a position as a FEN string
+    public static String write(BitboardPosition position, int fullmoveNumber) {
+        StringBuilder fen = new StringBuilder(90);
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int code = position.pieceAt(BitboardPosition.square(row, col));
+                if (code == BitboardPosition.NO_PIECE) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                char letter = PIECE_LETTERS.charAt(BitboardPosition.typeOf(code));
+                fen.append(BitboardPosition.colourOf(code) == BitboardPosition.WHITE ? letter
+                        : Character.toLowerCase(letter));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row < 7) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(position.getSideToMove() == BitboardPosition.WHITE ? " w " : " b ");
+        int rights = position.getCastlingRights();
+        if (rights == 0) {
+            fen.append('-');
+        }
+        for (int i = 0; i < 4; i++) {
+            if ((rights & (1 << i)) != 0) {
+                fen.append("KQkq".charAt(i));
+            }
+        }
+        int enPassant = position.getEnPassantSquare();
+        fen.append(' ').append(enPassant == BitboardPosition.NO_SQUARE ? "-" : squareName(enPassant));
+        fen.append(' ').append(position.getHalfmoveClock()).append(' ').append(fullmoveNumber);
+        return fen.toString();
+    }
+
+    // turns a square such as "e3" into a square number
+    public static int parseSquare(String name) {
+        if (name.length() != 2 || name.charAt(0) < 'a' || name.charAt(0) > 'h' || name.charAt(1) < '1'
+                || name.charAt(1) > '8') {
+            throw new IllegalArgumentException("Invalid square: " + name);
+        }
+        return BitboardPosition.square('8' - name.charAt(1), name.charAt(0) - 'a');
+    }
+
+    // names a square the way FEN, PGN and UCI do, e.g. "e3"
+    public static String squareName(int square) {
+        return "" + (char) ('a' + BitboardPosition.colOf(square)) + (char) ('8' - BitboardPosition.rowOf(square));
+    }
+
+} // end Fen
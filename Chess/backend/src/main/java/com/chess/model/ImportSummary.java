@@ -0,0 +1,35 @@
+package com.chess.model;
+
+import java.util.List;
+
+// what a bulk PGN import found: how many games were read, how many replayed
+// legally, and the reasons the first few invalid games were rejected
+public class ImportSummary {
+    private long games;
+    private long valid;
+    private long invalid;
+    private List<String> errors;
+
+    public ImportSummary(long games, long valid, long invalid, List<String> errors) {
+        this.games = games;
+        this.valid = valid;
+        this.invalid = invalid;
+        this.errors = errors;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getValid() {
+        return valid;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,29 @@
+package com.chess.model;
+
+// a move the side to move may make, in the same notation as MoveRequest so it
+// can be sent back as it is (castling as the king's and rook's squares, a
+// promotion with the row that picks the piece), and in UCI notation, which
+// names the square the piece really lands on and the piece a pawn promotes to
+public class LegalMove {
+    private String from;
+    private String to;
+    private String uci;
+
+    public LegalMove(String from, String to, String uci) {
+        this.from = from;
+        this.to = to;
+        this.uci = uci;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getUci() {
+        return uci;
+    }
+}
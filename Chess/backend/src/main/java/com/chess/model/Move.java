@@ -38,4 +38,10 @@ public class Move {
 
     }
 
+    // equal moves must have equal hash codes so moves work as map keys
+    @Override
+    public int hashCode() {
+        return source.hashCode() * 64 + destination.hashCode();
+    }
+
 } // end Move
\ No newline at end of file
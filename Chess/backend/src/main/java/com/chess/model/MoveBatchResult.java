@@ -0,0 +1,24 @@
+package com.chess.model;
+
+import java.util.List;
+
+// the result codes of a batch of moves, one per move tried. The batch stops
+// at the first move that is not made (a code of zero or less), so complete is
+// false if some moves were never tried
+public class MoveBatchResult {
+    private List<Integer> results;
+    private boolean complete;
+
+    public MoveBatchResult(List<Integer> results, boolean complete) {
+        this.results = results;
+        this.complete = complete;
+    }
+
+    public List<Integer> getResults() {
+        return results;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,40 @@
+package com.chess.model;
+
+// a change to a game pushed to its subscribers: the move made (in the same
+// notation as MoveRequest), its result code and the kind of event, plus the
+// position key afterwards so a client can tell if it missed anything
+public class MoveEvent {
+    private String type;
+    private String from;
+    private String to;
+    private int result;
+    private String version;
+
+    public MoveEvent(String type, String from, String to, int result, String version) {
+        this.type = type;
+        this.from = from;
+        this.to = to;
+        this.result = result;
+        this.version = version;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public int getResult() {
+        return result;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,283 @@
+package com.chess.model;
+
+// generates moves as packed ints (see PackedMove) into a buffer supplied by
+// the caller, so generating moves never allocates. generate writes
+// pseudo-legal moves, which may still leave the mover's own king in check, for
+// searches that check legality as they make each move; generateLegal writes
+// only legal ones
+public final class MoveGenerator {
+    // no chess position has more than 218 moves
+    public static final int MAX_MOVES = 256;
+
+    private MoveGenerator() {
+    }
+
+    // writes every pseudo-legal move for the side to move and returns how many
+    // were written
+    public static int generate(BitboardPosition position, int[] moves) {
+        int colour = position.getSideToMove();
+        int count = 0;
+        long own = position.getColourOccupancy(colour);
+        while (own != 0) {
+            int from = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            count = generatePieceMoves(position, from, position.pieceAt(from), moves, count);
+        }
+        count = generateEnPassant(position, colour, moves, count);
+        count = generateCastles(position, colour, moves, count);
+        return count;
+    }
+
+    // writes only the legal moves for the side to move and returns how many were
+    // written. The pieces giving check and the pieces pinned to the king are
+    // found once up front, so no move has to be tried on the position, which is
+    // left untouched
+    public static int generateLegal(BitboardPosition position, int[] moves) {
+        int colour = position.getSideToMove();
+        int enemy = colour ^ 1;
+        int kingSquare = position.kingSquare(colour);
+        long kingBit = 1L << kingSquare;
+        long occupied = position.getOccupied();
+        long own = position.getColourOccupancy(colour);
+        long enemyPieces = position.getColourOccupancy(enemy);
+        long checkers = Attacks.attackers(position, kingSquare, enemy);
+
+        // the king is taken off the board when looking at where it may go, so a
+        // slider checking it along a line still covers the square behind it
+        int count = 0;
+        long kingTargets = Attacks.king(kingSquare) & ~own;
+        while (kingTargets != 0) {
+            int to = Long.numberOfTrailingZeros(kingTargets);
+            kingTargets &= kingTargets - 1;
+            if (!Attacks.isSquareAttacked(position, to, enemy, occupied ^ kingBit)) {
+                int flags = (enemyPieces & (1L << to)) != 0 ? PackedMove.CAPTURE : PackedMove.QUIET;
+                moves[count++] = PackedMove.encode(kingSquare, to, flags);
+            }
+        }
+        if (Long.bitCount(checkers) > 1) {
+            // only the king can answer a double check
+            return count;
+        }
+
+        // out of check any square will do; in check the other pieces must take
+        // the checker or, if it is a slider, step in between
+        long targets = ~own;
+        if (checkers != 0) {
+            targets = checkers;
+            long leapers = position.getPieces(enemy, BitboardPosition.PAWN)
+                    | position.getPieces(enemy, BitboardPosition.KNIGHT);
+            if ((checkers & leapers) == 0) {
+                targets |= Attacks.between(kingSquare, Long.numberOfTrailingZeros(checkers), occupied);
+            }
+        }
+
+        // a piece alone between the king and an enemy slider is pinned: it may
+        // only move along the line, and cannot help against a check at all
+        long queens = position.getPieces(enemy, BitboardPosition.QUEEN);
+        long straight = position.getPieces(enemy, BitboardPosition.ROOK) | queens;
+        long diagonal = position.getPieces(enemy, BitboardPosition.BISHOP) | queens;
+        long snipers = (Attacks.rook(kingSquare, enemyPieces) & straight)
+                | (Attacks.bishop(kingSquare, enemyPieces) & diagonal);
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long sniperBit = 1L << sniper;
+            long line = Attacks.between(kingSquare, sniper, kingBit | sniperBit);
+            long blockers = line & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers;
+                if (checkers == 0) {
+                    count = addPieceMoves(position, Long.numberOfTrailingZeros(blockers), line | sniperBit, moves,
+                            count);
+                }
+            }
+        }
+
+        long movers = own & ~kingBit & ~pinned;
+        while (movers != 0) {
+            int from = Long.numberOfTrailingZeros(movers);
+            movers &= movers - 1;
+            count = addPieceMoves(position, from, targets, moves, count);
+        }
+        count = addLegalEnPassant(position, colour, kingSquare, occupied, moves, count);
+        if (checkers == 0) {
+            // castling already checks every square the king crosses
+            count = generateCastles(position, colour, moves, count);
+        }
+        return count;
+    }
+
+    // writes the moves of the piece on a square that land on one of the
+    // allowed squares
+    private static int addPieceMoves(BitboardPosition position, int from, long allowed, int[] moves, int count) {
+        int start = count;
+        int end = generatePieceMoves(position, from, position.pieceAt(from), moves, count);
+        for (int i = start; i < end; i++) {
+            if ((allowed & (1L << PackedMove.to(moves[i]))) != 0) {
+                moves[count++] = moves[i];
+            }
+        }
+        return count;
+    }
+
+    // en passant takes a pawn that is not on the square the capturing pawn
+    // lands on, so it can uncover the king along the row both pawns leave, or
+    // fail to deal with a check, in ways pins do not show. Instead the king's
+    // attackers are worked out for the board as it will be
+    private static int addLegalEnPassant(BitboardPosition position, int colour, int kingSquare, long occupied,
+            int[] moves, int count) {
+        int target = position.getEnPassantSquare();
+        if (target == BitboardPosition.NO_SQUARE) {
+            return count;
+        }
+        int enemy = colour ^ 1;
+        long taken = 1L << (target + (colour == BitboardPosition.WHITE ? 8 : -8));
+        long queens = position.getPieces(enemy, BitboardPosition.QUEEN);
+        long diagonal = position.getPieces(enemy, BitboardPosition.BISHOP) | queens;
+        long straight = position.getPieces(enemy, BitboardPosition.ROOK) | queens;
+        long stillChecking = (Attacks.knight(kingSquare) & position.getPieces(enemy, BitboardPosition.KNIGHT))
+                | (Attacks.pawn(colour, kingSquare) & position.getPieces(enemy, BitboardPosition.PAWN) & ~taken);
+        long takers = Attacks.pawn(enemy, target) & position.getPieces(colour, BitboardPosition.PAWN);
+        while (takers != 0) {
+            int from = Long.numberOfTrailingZeros(takers);
+            takers &= takers - 1;
+            long after = (occupied ^ (1L << from) ^ taken) | (1L << target);
+            if (stillChecking == 0 && (Attacks.bishop(kingSquare, after) & diagonal) == 0
+                    && (Attacks.rook(kingSquare, after) & straight) == 0) {
+                moves[count++] = PackedMove.encode(from, target, PackedMove.EN_PASSANT);
+            }
+        }
+        return count;
+    }
+
+    // writes the ordinary moves (no castling or en passant) of a piece standing on
+    // a square, starting at moves[count], and returns the new count
+    public static int generatePieceMoves(BitboardPosition position, int from, int code, int[] moves, int count) {
+        int colour = BitboardPosition.colourOf(code);
+        long own = position.getColourOccupancy(colour);
+        long enemy = position.getColourOccupancy(colour ^ 1);
+        long targets;
+        switch (BitboardPosition.typeOf(code)) {
+            case BitboardPosition.PAWN:
+                return generatePawnMoves(position, from, colour, enemy, moves, count);
+            case BitboardPosition.KNIGHT:
+                targets = Attacks.knight(from);
+                break;
+            case BitboardPosition.BISHOP:
+                targets = Attacks.bishop(from, position.getOccupied());
+                break;
+            case BitboardPosition.ROOK:
+                targets = Attacks.rook(from, position.getOccupied());
+                break;
+            case BitboardPosition.QUEEN:
+                targets = Attacks.queen(from, position.getOccupied());
+                break;
+            default:
+                targets = Attacks.king(from);
+                break;
+        }
+        targets &= ~own;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            int flags = (enemy & (1L << to)) != 0 ? PackedMove.CAPTURE : PackedMove.QUIET;
+            moves[count++] = PackedMove.encode(from, to, flags);
+        }
+        return count;
+    }
+
+    private static int generatePawnMoves(BitboardPosition position, int from, int colour, long enemy, int[] moves,
+            int count) {
+        int step = colour == BitboardPosition.WHITE ? -8 : 8; // white pawns move towards row 0
+        int startRow = colour == BitboardPosition.WHITE ? 6 : 1;
+
+        // one step forward, and two steps from the starting row
+        int to = from + step;
+        if (to >= 0 && to < 64 && position.isEmpty(to)) {
+            count = addPawnMove(from, to, PackedMove.QUIET, moves, count);
+            if (BitboardPosition.rowOf(from) == startRow && position.isEmpty(to + step)) {
+                moves[count++] = PackedMove.encode(from, to + step, PackedMove.DOUBLE_PAWN_PUSH);
+            }
+        }
+
+        // diagonal captures
+        long captures = Attacks.pawn(colour, from) & enemy;
+        while (captures != 0) {
+            int target = Long.numberOfTrailingZeros(captures);
+            captures &= captures - 1;
+            count = addPawnMove(from, target, PackedMove.CAPTURE, moves, count);
+        }
+        return count;
+    }
+
+    // adds a pawn move, expanding it into the four promotions on the last row
+    private static int addPawnMove(int from, int to, int flags, int[] moves, int count) {
+        int row = BitboardPosition.rowOf(to);
+        if (row == 0 || row == 7) {
+            int promotionFlags = flags | PackedMove.PROMOTION;
+            moves[count++] = PackedMove.encode(from, to, promotionFlags, BitboardPosition.QUEEN);
+            moves[count++] = PackedMove.encode(from, to, promotionFlags, BitboardPosition.ROOK);
+            moves[count++] = PackedMove.encode(from, to, promotionFlags, BitboardPosition.BISHOP);
+            moves[count++] = PackedMove.encode(from, to, promotionFlags, BitboardPosition.KNIGHT);
+        } else {
+            moves[count++] = PackedMove.encode(from, to, flags);
+        }
+        return count;
+    }
+
+    private static int generateEnPassant(BitboardPosition position, int colour, int[] moves, int count) {
+        int target = position.getEnPassantSquare();
+        if (target == BitboardPosition.NO_SQUARE) {
+            return count;
+        }
+        // a pawn can take en passant from exactly the squares an enemy pawn on the
+        // target square would attack
+        long takers = Attacks.pawn(colour ^ 1, target) & position.getPieces(colour, BitboardPosition.PAWN);
+        while (takers != 0) {
+            int from = Long.numberOfTrailingZeros(takers);
+            takers &= takers - 1;
+            moves[count++] = PackedMove.encode(from, target, PackedMove.EN_PASSANT);
+        }
+        return count;
+    }
+
+    // castling needs the right, an empty path, the king and rook in place, and the
+    // king not to start in, pass through or land on an attacked square
+    private static int generateCastles(BitboardPosition position, int colour, int[] moves, int count) {
+        int homeRow = colour == BitboardPosition.WHITE ? 7 : 0;
+        int kingSquare = BitboardPosition.square(homeRow, 4);
+        int kingCode = BitboardPosition.code(colour, BitboardPosition.KING);
+        int rookCode = BitboardPosition.code(colour, BitboardPosition.ROOK);
+        if (position.pieceAt(kingSquare) != kingCode) {
+            return count;
+        }
+        int kingside = colour == BitboardPosition.WHITE ? BitboardPosition.WHITE_KINGSIDE
+                : BitboardPosition.BLACK_KINGSIDE;
+        int queenside = colour == BitboardPosition.WHITE ? BitboardPosition.WHITE_QUEENSIDE
+                : BitboardPosition.BLACK_QUEENSIDE;
+        int enemy = colour ^ 1;
+        if (!position.hasCastlingRight(kingside | queenside)
+                || Attacks.isSquareAttacked(position, kingSquare, enemy)) {
+            return count;
+        }
+
+        if (position.hasCastlingRight(kingside)
+                && position.pieceAt(kingSquare + 3) == rookCode
+                && position.isEmpty(kingSquare + 1) && position.isEmpty(kingSquare + 2)
+                && !Attacks.isSquareAttacked(position, kingSquare + 1, enemy)
+                && !Attacks.isSquareAttacked(position, kingSquare + 2, enemy)) {
+            moves[count++] = PackedMove.encode(kingSquare, kingSquare + 2, PackedMove.KING_CASTLE);
+        }
+        if (position.hasCastlingRight(queenside)
+                && position.pieceAt(kingSquare - 4) == rookCode
+                && position.isEmpty(kingSquare - 1) && position.isEmpty(kingSquare - 2)
+                && position.isEmpty(kingSquare - 3)
+                && !Attacks.isSquareAttacked(position, kingSquare - 1, enemy)
+                && !Attacks.isSquareAttacked(position, kingSquare - 2, enemy)) {
+            moves[count++] = PackedMove.encode(kingSquare, kingSquare - 2, PackedMove.QUEEN_CASTLE);
+        }
+        return count;
+    }
+
+} // end MoveGenerator
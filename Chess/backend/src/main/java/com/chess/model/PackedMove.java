@@ -0,0 +1,69 @@
+package com.chess.model;
+
+// packs a move into a single int so move lists can live in plain int arrays.
+// bits 0-5 hold the source square, bits 6-11 the destination square, bits
+// 12-15 the move flags and bits 16-18 the piece type a pawn promotes to
+public final class PackedMove {
+    // move flags
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PAWN_PUSH = 1;
+    public static final int KING_CASTLE = 2;
+    public static final int QUEEN_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int PROMOTION = 8;
+    public static final int PROMOTION_CAPTURE = 12;
+
+    public static final int NONE = 0;
+
+    private PackedMove() {
+    }
+
+    public static int encode(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    public static int encode(int from, int to, int flags, int promotion) {
+        return from | (to << 6) | (flags << 12) | (promotion << 16);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int flags(int move) {
+        return (move >>> 12) & 15;
+    }
+
+    // gets the piece type a pawn promotes to (only meaningful for promotions)
+    public static int promotion(int move) {
+        return (move >>> 16) & 7;
+    }
+
+    public static boolean isCapture(int move) {
+        return (flags(move) & CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (flags(move) & PROMOTION) != 0;
+    }
+
+    // writes a move in UCI long algebraic notation, e.g. "e2e4" or "e7e8q"
+    public static String toUci(int move) {
+        String uci = Fen.squareName(from(move)) + Fen.squareName(to(move));
+        if (isPromotion(move)) {
+            uci += "pnbrqk".charAt(promotion(move));
+        }
+        return uci;
+    }
+
+    public static boolean isCastle(int move) {
+        int flags = flags(move);
+        return flags == KING_CASTLE || flags == QUEEN_CASTLE;
+    }
+
+} // end PackedMove
@@ -0,0 +1,76 @@
+package com.chess.model;
+
+// counts the leaf nodes of the legal move tree to a fixed depth. The counts
+// for well known positions are published, so any difference points at a move
+// generation bug, and the nodes per second show how fast generation is.
+// Run from the command line with a FEN string and a depth to print the count
+// below each root move ("divide") and the speed
+public final class Perft {
+    private final BitboardPosition position; // made and unmade in place
+    private final int[][] moves; // one move buffer per ply, reused
+
+    public Perft(int maxDepth) {
+        position = new BitboardPosition();
+        moves = new int[maxDepth + 1][MoveGenerator.MAX_MOVES];
+    }
+
+    // counts the legal move sequences of the given length from a position
+    public long perft(BitboardPosition root, int depth) {
+        position.copyFrom(root);
+        return perft(0, depth);
+    }
+
+    // like perft, but prints the count below each legal root move
+    public long divide(BitboardPosition root, int depth, StringBuilder out) {
+        position.copyFrom(root);
+        int count = MoveGenerator.generateLegal(position, moves[0]);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[0][i]);
+            long nodes = depth <= 1 ? 1 : perft(1, depth - 1);
+            position.unmakeMove();
+            out.append(PackedMove.toUci(moves[0][i])).append(": ").append(nodes).append('\n');
+            total += nodes;
+        }
+        return total;
+    }
+
+    private long perft(int ply, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        int[] plyMoves = moves[ply];
+        int count = MoveGenerator.generateLegal(position, plyMoves);
+        if (depth == 1) {
+            // the legal moves are the leaves, so there is no need to make them
+            return count;
+        }
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(plyMoves[i]);
+            nodes += perft(ply + 1, depth - 1);
+            position.unmakeMove();
+        }
+        return nodes;
+    }
+
+    // usage: Perft "<fen>" <depth>
+    public static void main(String[] args) {
+        String fen = args.length > 0 ? args[0] : Fen.START_POSITION;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        BitboardPosition root = new BitboardPosition();
+        Fen.load(fen, root);
+
+        StringBuilder out = new StringBuilder();
+        long start = System.nanoTime();
+        long nodes = new Perft(depth).divide(root, depth, out);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+
+        System.out.print(out);
+        System.out.println();
+        System.out.println("Nodes: " + nodes);
+        System.out.println("Time: " + elapsed / 1_000_000 + " ms");
+        System.out.println("Nodes per second: " + nodes * 1_000_000_000L / elapsed);
+    }
+
+} // end Perft
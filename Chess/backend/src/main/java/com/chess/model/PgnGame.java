@@ -0,0 +1,79 @@
+package com.chess.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// one game of a PGN file: its tag pairs in file order, its main line of moves
+// in SAN (comments, variations and annotations dropped) and its result
+public final class PgnGame {
+    private final Map<String, String> tags;
+    private final List<String> moves;
+    private String result;
+
+    public PgnGame() {
+        tags = new LinkedHashMap<>();
+        moves = new ArrayList<>();
+        result = "*";
+    }
+
+    public PgnGame(Map<String, String> tags, List<String> moves, String result) {
+        this.tags = new LinkedHashMap<>(tags);
+        this.moves = new ArrayList<>(moves);
+        this.result = result;
+    }
+
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    public List<String> getMoves() {
+        return Collections.unmodifiableList(moves);
+    }
+
+    public void addMove(String san) {
+        moves.add(san);
+    }
+
+    // "1-0", "0-1", "1/2-1/2" or "*" for a game still in progress
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    // the position the game starts from: the FEN tag if there is one,
+    // otherwise the standard starting position
+    public String getStartFen() {
+        String fen = tags.get("FEN");
+        return fen == null ? Fen.START_POSITION : fen;
+    }
+
+    // replays the moves from the start position, throwing an
+    // IllegalArgumentException naming the first move that is not legal
+    public BitboardPosition replay() {
+        BitboardPosition position = new BitboardPosition();
+        Fen.load(getStartFen(), position);
+        for (int i = 0; i < moves.size(); i++) {
+            try {
+                position.makeMove(San.parse(position, moves.get(i)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Move " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        return position;
+    }
+
+} // end PgnGame
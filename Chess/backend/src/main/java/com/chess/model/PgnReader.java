@@ -0,0 +1,186 @@
+package com.chess.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+// reads the games of a PGN file one at a time, so archives of any size can be
+// processed while holding a single game in memory. Comments, variations,
+// numeric annotation glyphs and move numbers are skipped
+public final class PgnReader implements Closeable {
+    private final Reader in;
+    private final StringBuilder token;
+    private int next; // one character of lookahead, -1 at the end of the input
+    private boolean lineStart;
+
+    public PgnReader(Reader in) throws IOException {
+        this.in = in;
+        this.token = new StringBuilder(32);
+        this.lineStart = true;
+        this.next = read();
+    }
+
+    // reads the next game, or returns null when there are no more
+    public PgnGame next() throws IOException {
+        PgnGame game = new PgnGame();
+        boolean started = false;
+        while (next != -1) {
+            int c = next;
+            if (lineStart && c == '%') {
+                skipLine(); // escaped line
+            } else if (Character.isWhitespace(c) || c == '.' || c == '!' || c == '?') {
+                advance();
+            } else if (c == '[') {
+                if (!game.getMoves().isEmpty()) {
+                    // tags of the next game; this one had no result
+                    return game;
+                }
+                readTag(game);
+                started = true;
+            } else if (c == '{') {
+                skipComment();
+            } else if (c == ';') {
+                skipLine();
+            } else if (c == '(') {
+                skipVariation();
+            } else if (c == '$') {
+                advance();
+                while (next >= '0' && next <= '9') {
+                    advance();
+                }
+            } else if (c == '*') {
+                advance();
+                game.setResult("*");
+                return game;
+            } else if (isSymbol(c)) {
+                String symbol = readSymbol();
+                started = true;
+                if (symbol.equals("1-0") || symbol.equals("0-1") || symbol.equals("1/2-1/2")) {
+                    game.setResult(symbol);
+                    return game;
+                }
+                if (!isMoveNumber(symbol)) {
+                    game.addMove(symbol);
+                }
+            } else {
+                throw new IOException("Unexpected character '" + (char) c + "' in PGN");
+            }
+        }
+        return started ? game : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readTag(PgnGame game) throws IOException {
+        advance(); // [
+        skipSpaces();
+        token.setLength(0);
+        while (next != -1 && isSymbol(next)) {
+            token.append((char) next);
+            advance();
+        }
+        String name = token.toString();
+        skipSpaces();
+        if (next != '"') {
+            throw new IOException("Malformed PGN tag " + name);
+        }
+        advance();
+        token.setLength(0);
+        while (next != '"') {
+            if (next == -1 || next == '\n') {
+                throw new IOException("Unterminated PGN tag " + name);
+            }
+            if (next == '\\') {
+                advance();
+            }
+            token.append((char) next);
+            advance();
+        }
+        advance(); // closing quote
+        skipSpaces();
+        if (next != ']') {
+            throw new IOException("Malformed PGN tag " + name);
+        }
+        advance();
+        game.setTag(name, token.toString());
+    }
+
+    private String readSymbol() throws IOException {
+        token.setLength(0);
+        while (next != -1 && isSymbol(next)) {
+            token.append((char) next);
+            advance();
+        }
+        return token.toString();
+    }
+
+    private void skipComment() throws IOException {
+        while (next != -1 && next != '}') {
+            advance();
+        }
+        advance();
+    }
+
+    private void skipLine() throws IOException {
+        while (next != -1 && next != '\n') {
+            advance();
+        }
+    }
+
+    // skips a variation, including any variations and comments inside it
+    private void skipVariation() throws IOException {
+        int depth = 0;
+        while (next != -1) {
+            if (next == '{') {
+                skipComment();
+                continue;
+            }
+            if (next == ';') {
+                skipLine();
+                continue;
+            }
+            if (next == '(') {
+                depth++;
+            } else if (next == ')' && --depth == 0) {
+                advance();
+                return;
+            }
+            advance();
+        }
+    }
+
+    private void skipSpaces() throws IOException {
+        while (next == ' ' || next == '\t') {
+            advance();
+        }
+    }
+
+    private void advance() throws IOException {
+        if (next != -1) {
+            lineStart = next == '\n';
+            next = read();
+        }
+    }
+
+    private int read() throws IOException {
+        return in.read();
+    }
+
+    private static boolean isSymbol(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '+' || c == '#' || c == '=' || c == ':' || c == '-' || c == '/';
+    }
+
+    private static boolean isMoveNumber(String symbol) {
+        for (int i = 0; i < symbol.length(); i++) {
+            if (symbol.charAt(i) < '0' || symbol.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+} // end PgnReader
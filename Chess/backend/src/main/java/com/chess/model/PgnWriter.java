@@ -0,0 +1,82 @@
+package com.chess.model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+// writes games in PGN export format: the seven required tags first, then any
+// others, then the moves wrapped at 80 columns and the result
+public final class PgnWriter {
+    private static final String[] SEVEN_TAG_ROSTER = { "Event", "Site", "Date", "Round", "White", "Black",
+            "Result" };
+    private static final int LINE_WIDTH = 80;
+
+    private final Writer out;
+
+    public PgnWriter(Writer out) {
+        this.out = out;
+    }
+
+    public void write(PgnGame game) throws IOException {
+        Map<String, String> tags = game.getTags();
+        for (String name : SEVEN_TAG_ROSTER) {
+            String value = name.equals("Result") ? game.getResult() : tags.get(name);
+            writeTag(name, value == null ? (name.equals("Date") ? "????.??.??" : "?") : value);
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!isRosterTag(tag.getKey())) {
+                writeTag(tag.getKey(), tag.getValue());
+            }
+        }
+        out.write('\n');
+
+        // move numbers follow the start position's side to move and move number
+        String[] fen = game.getStartFen().trim().split("\\s+");
+        boolean white = fen.length < 2 || fen[1].equals("w");
+        int moveNumber = fen.length > 5 ? Integer.parseInt(fen[5]) : 1;
+        int column = 0;
+        boolean first = true;
+        for (String san : game.getMoves()) {
+            String text = white ? moveNumber + ". " + san : first ? moveNumber + "... " + san : san;
+            column = writeWord(text, column);
+            if (!white) {
+                moveNumber++;
+            }
+            white = !white;
+            first = false;
+        }
+        writeWord(game.getResult(), column);
+        out.write("\n\n");
+    }
+
+    // writes a word, starting a new line first if it would not fit
+    private int writeWord(String word, int column) throws IOException {
+        if (column > 0 && column + 1 + word.length() > LINE_WIDTH) {
+            out.write('\n');
+            column = 0;
+        } else if (column > 0) {
+            out.write(' ');
+            column++;
+        }
+        out.write(word);
+        return column + word.length();
+    }
+
+    private void writeTag(String name, String value) throws IOException {
+        out.write('[');
+        out.write(name);
+        out.write(" \"");
+        out.write(value.replace("\\", "\\\\").replace("\"", "\\\""));
+        out.write("\"]\n");
+    }
+
+    private static boolean isRosterTag(String name) {
+        for (String rosterName : SEVEN_TAG_ROSTER) {
+            if (rosterName.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+} // end PgnWriter
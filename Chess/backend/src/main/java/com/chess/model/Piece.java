@@ -20,4 +20,12 @@ public abstract class Piece {
 
     // gets the symbol representing the piece
     public abstract String getSymbol();
+
+    // gets the bitboard piece type (BitboardPosition.PAWN to BitboardPosition.KING)
+    abstract int getType();
+
+    // gets the bitboard piece code combining colour and type
+    int getCode() {
+        return BitboardPosition.code(colour.ordinal(), getType());
+    }
 } // end Piece
\ No newline at end of file
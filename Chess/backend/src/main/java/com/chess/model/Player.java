@@ -1,7 +1,5 @@
 package com.chess.model;
 
-import java.util.List;
-
 class Player {
     private Colour colour;
 
@@ -49,18 +47,10 @@ class Player {
             return new Move(new Position(-1, -2), new Position(-1, -2));
         }
 
-        // gets the list of possible moves the piece can make in its current position
-        List<Move> possibleMoves = piece.getPossibleMoves(source, board);
+        // checks if the desired move is legal based on the possible moves the piece
+        // can make in its current position
         Move selectedMove = new Move(source, destination);
-
-        // checks if the desired move is legal based on the possible moves
-        boolean isValidMove = false;
-        for (Move move : possibleMoves) {
-            if (move.equals(selectedMove)) {
-                isValidMove = true;
-                break;
-            }
-        }
+        boolean isValidMove = board.isPossibleMove(selectedMove);
 
         // prompts the player for a valid move if the desired move is not legal
         if (!isValidMove) {
@@ -34,4 +34,10 @@ class Position {
         return this.row == otherPosition.row && this.col == otherPosition.col;
     }
 
+    // equal positions must have equal hash codes so positions work as map keys
+    @Override
+    public int hashCode() {
+        return row * 8 + col;
+    }
+
 } // end Position
\ No newline at end of file
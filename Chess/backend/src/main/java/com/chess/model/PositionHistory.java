@@ -0,0 +1,109 @@
+package com.chess.model;
+
+import java.util.Arrays;
+
+// the Zobrist keys of every position reached in a game, kept in a primitive
+// long array, together with the halfmove clock (plies since the last capture
+// or pawn move). Positions before a capture or pawn move can never come back,
+// so repetitions are counted in a small hash table that only holds keys since
+// then; clearing it is O(1) by bumping a generation stamp
+final class PositionHistory {
+    private long[] keys;
+    private int size;
+    private int halfmoveClock;
+
+    private long[] tableKeys;
+    private int[] tableCounts;
+    private int[] tableGenerations; // a slot is empty unless it has the current generation
+    private int generation;
+
+    PositionHistory(long startKey) {
+        this(startKey, 0);
+    }
+
+    // starts from a position whose clock is already running, as a FEN gives
+    // it; the positions before it are not known, so only the clock counts them
+    PositionHistory(long startKey, int halfmoveClock) {
+        keys = new long[64];
+        tableKeys = new long[64];
+        tableCounts = new int[64];
+        tableGenerations = new int[64];
+        generation = 1;
+        keys[size++] = startKey;
+        this.halfmoveClock = halfmoveClock;
+        increment(startKey);
+    }
+
+    // records the position reached by a move and returns how many times it has
+    // now occurred
+    int add(long key, boolean irreversible) {
+        if (irreversible) {
+            generation++;
+            halfmoveClock = 0;
+        } else {
+            halfmoveClock++;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        keys[size++] = key;
+        if ((size - firstRecent()) * 2 > tableKeys.length) {
+            growTable();
+        }
+        return increment(key);
+    }
+
+    int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    // number of positions recorded, including the starting one
+    int size() {
+        return size;
+    }
+
+    long keyAt(int index) {
+        return keys[index];
+    }
+
+    long lastKey() {
+        return keys[size - 1];
+    }
+
+    // the keys reached since the last capture or pawn move, oldest first
+    long[] recentKeys() {
+        return Arrays.copyOfRange(keys, firstRecent(), size);
+    }
+
+    // index of the oldest key since the last capture or pawn move that is known
+    private int firstRecent() {
+        return Math.max(0, size - halfmoveClock - 1);
+    }
+
+    private int increment(long key) {
+        int mask = tableKeys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (tableGenerations[slot] == generation && tableKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (tableGenerations[slot] != generation) {
+            tableGenerations[slot] = generation;
+            tableKeys[slot] = key;
+            tableCounts[slot] = 0;
+        }
+        return ++tableCounts[slot];
+    }
+
+    // doubles the table and counts the keys since the last capture or pawn move
+    // again (the newest key is counted by the caller)
+    private void growTable() {
+        int capacity = tableKeys.length * 2;
+        tableKeys = new long[capacity];
+        tableCounts = new int[capacity];
+        tableGenerations = new int[capacity];
+        for (int i = firstRecent(); i < size - 1; i++) {
+            increment(keys[i]);
+        }
+    }
+
+} // end PositionHistory
@@ -1,6 +1,5 @@
 package com.chess.model;
 
-import java.util.ArrayList;
 import java.util.List;
 
 class Queen extends Piece {
@@ -12,18 +11,7 @@ class Queen extends Piece {
     // gets a list of all the possible moves that can be made by a queen in its
     // given position
     public List<Move> getPossibleMoves(Position position, Board board) {
-        // stores possible moves
-        List<Move> possibleMoves = new ArrayList<>();
-
-        // adds all the moves of a rook to the possible queen moves
-        Rook rook = new Rook(getColour());
-        possibleMoves.addAll(rook.getPossibleMoves(position, board));
-
-        // adds all the moves of a bishop to the possible queen moves
-        Bishop bishop = new Bishop(getColour());
-        possibleMoves.addAll(bishop.getPossibleMoves(position, board));
-
-        return possibleMoves;
+        return board.getPossibleMoves(position, this);
     }
 
     // unicode characters to represent the queen
@@ -31,4 +19,10 @@ class Queen extends Piece {
     public String getSymbol() {
         return getColour() == Colour.WHITE ? "Q" : "Q";
     }
+
+    // bitboard piece type of the queen
+    @Override
+    int getType() {
+        return BitboardPosition.QUEEN;
+    }
 } // end Queen
\ No newline at end of file
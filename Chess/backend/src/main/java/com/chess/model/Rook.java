@@ -1,6 +1,5 @@
 package com.chess.model;
 
-import java.util.ArrayList;
 import java.util.List;
 
 class Rook extends Piece {
@@ -12,42 +11,7 @@ class Rook extends Piece {
     // position
     @Override
     public List<Move> getPossibleMoves(Position position, Board board) {
-        // stores possible moves
-        List<Move> possibleMoves = new ArrayList<>();
-
-        // define arrays for row and column directions a rook can move in
-        int[] rowDirections = { -1, 1, 0, 0 };
-        int[] colDirections = { 0, 0, -1, 1 };
-
-        // iterates through the row and column directions
-        for (int i = 0; i < 4; i++) {
-            int row = position.getRow() + rowDirections[i];
-            int col = position.getCol() + colDirections[i];
-            Position newPosition = new Position(row, col);
-
-            // checks if the position is valid
-            while (board.isValidPosition(newPosition)) {
-                // checks to see if the position is empty
-                if (board.isEmptyPosition(newPosition)) {
-                    // add to possible moves
-                    possibleMoves.add(new Move(position, newPosition));
-                } else {
-                    // prevents piece from taking its own colour
-                    if (board.getPieceAt(newPosition).getColour() != getColour()) {
-                        // add to possible moves
-                        possibleMoves.add(new Move(position, newPosition));
-                    }
-                    break;
-                }
-
-                // moves on to the next position
-                row += rowDirections[i];
-                col += colDirections[i];
-                newPosition = new Position(row, col);
-            }
-        }
-
-        return possibleMoves;
+        return board.getPossibleMoves(position, this);
     }
 
     // unicode characters to represent the rook
@@ -55,4 +19,10 @@ class Rook extends Piece {
     public String getSymbol() {
         return getColour() == Colour.WHITE ? "R" : "R";
     }
+
+    // bitboard piece type of the rook
+    @Override
+    int getType() {
+        return BitboardPosition.ROOK;
+    }
 } // end Rook
\ No newline at end of file
@@ -0,0 +1,153 @@
+package com.chess.model;
+
+// reads and writes moves in Standard Algebraic Notation (SAN), the notation
+// PGN uses, e.g. "e4", "Nbd7", "exd6", "O-O" or "e8=Q+". Both directions need
+// the position the move is played from to resolve which piece moves
+public final class San {
+    private static final String PIECE_LETTERS = "PNBRQK";
+
+    private San() {
+    }
+
+    // finds the legal move a SAN string stands for in a position
+    public static int parse(BitboardPosition position, String san) {
+        String text = san;
+        while (!text.isEmpty() && "+#!?".indexOf(text.charAt(text.length() - 1)) >= 0) {
+            text = text.substring(0, text.length() - 1);
+        }
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(position, moves);
+
+        if (text.equals("O-O") || text.equals("0-0") || text.equals("O-O-O") || text.equals("0-0-0")) {
+            int flags = text.length() == 3 ? PackedMove.KING_CASTLE : PackedMove.QUEEN_CASTLE;
+            for (int i = 0; i < count; i++) {
+                if (PackedMove.flags(moves[i]) == flags) {
+                    return moves[i];
+                }
+            }
+            throw new IllegalArgumentException("Illegal move: " + san);
+        }
+
+        // split off the piece letter, promotion and destination square
+        int type = BitboardPosition.PAWN;
+        if (!text.isEmpty() && Character.isUpperCase(text.charAt(0))) {
+            type = PIECE_LETTERS.indexOf(text.charAt(0));
+            if (type <= BitboardPosition.PAWN) {
+                throw new IllegalArgumentException("Invalid move: " + san);
+            }
+            text = text.substring(1);
+        }
+        int promotion = BitboardPosition.NO_PIECE;
+        if (type == BitboardPosition.PAWN && !text.isEmpty()
+                && PIECE_LETTERS.indexOf(text.charAt(text.length() - 1)) > BitboardPosition.PAWN) {
+            promotion = PIECE_LETTERS.indexOf(text.charAt(text.length() - 1));
+            text = text.substring(0, text.length() - (text.endsWith("=" + text.charAt(text.length() - 1)) ? 2 : 1));
+        }
+        if (text.length() < 2) {
+            throw new IllegalArgumentException("Invalid move: " + san);
+        }
+        int to;
+        try {
+            to = Fen.parseSquare(text.substring(text.length() - 2));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid move: " + san);
+        }
+
+        // whatever is left names the source file and/or rank
+        int fromCol = -1;
+        int fromRow = -1;
+        for (int i = 0; i < text.length() - 2; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromCol = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRow = '8' - c;
+            } else if (c != 'x' && c != '-' && c != ':') {
+                throw new IllegalArgumentException("Invalid move: " + san);
+            }
+        }
+
+        int match = 0;
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int from = PackedMove.from(move);
+            if (PackedMove.to(move) != to || PackedMove.isCastle(move)
+                    || BitboardPosition.typeOf(position.pieceAt(from)) != type
+                    || (fromCol >= 0 && BitboardPosition.colOf(from) != fromCol)
+                    || (fromRow >= 0 && BitboardPosition.rowOf(from) != fromRow)) {
+                continue;
+            }
+            if (PackedMove.isPromotion(move) ? PackedMove.promotion(move) != promotion
+                    : promotion != BitboardPosition.NO_PIECE) {
+                continue;
+            }
+            match = move;
+            found++;
+        }
+        if (found == 0) {
+            throw new IllegalArgumentException("Illegal move: " + san);
+        }
+        if (found > 1) {
+            throw new IllegalArgumentException("Ambiguous move: " + san);
+        }
+        return match;
+    }
+
+    // writes a legal move in SAN, including the check or checkmate suffix
+    public static String write(BitboardPosition position, int move) {
+        StringBuilder san = new StringBuilder(8);
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int type = BitboardPosition.typeOf(position.pieceAt(from));
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(position, moves);
+
+        if (PackedMove.isCastle(move)) {
+            san.append(PackedMove.flags(move) == PackedMove.KING_CASTLE ? "O-O" : "O-O-O");
+        } else if (type == BitboardPosition.PAWN) {
+            if (PackedMove.isCapture(move)) {
+                san.append((char) ('a' + BitboardPosition.colOf(from))).append('x');
+            }
+            san.append(Fen.squareName(to));
+            if (PackedMove.isPromotion(move)) {
+                san.append('=').append(PIECE_LETTERS.charAt(PackedMove.promotion(move)));
+            }
+        } else {
+            san.append(PIECE_LETTERS.charAt(type));
+            // name the source file, rank or both if another piece of the same
+            // kind could also move there
+            boolean ambiguous = false;
+            boolean sameCol = false;
+            boolean sameRow = false;
+            for (int i = 0; i < count; i++) {
+                int other = PackedMove.from(moves[i]);
+                if (other != from && PackedMove.to(moves[i]) == to
+                        && BitboardPosition.typeOf(position.pieceAt(other)) == type) {
+                    ambiguous = true;
+                    sameCol |= BitboardPosition.colOf(other) == BitboardPosition.colOf(from);
+                    sameRow |= BitboardPosition.rowOf(other) == BitboardPosition.rowOf(from);
+                }
+            }
+            if (ambiguous && (!sameCol || sameRow)) {
+                san.append((char) ('a' + BitboardPosition.colOf(from)));
+            }
+            if (ambiguous && sameCol) {
+                san.append((char) ('8' - BitboardPosition.rowOf(from)));
+            }
+            if (PackedMove.isCapture(move)) {
+                san.append('x');
+            }
+            san.append(Fen.squareName(to));
+        }
+
+        int colour = position.getSideToMove();
+        position.makeMove(move);
+        if (position.isInCheck(colour ^ 1)) {
+            san.append(MoveGenerator.generateLegal(position, moves) == 0 ? '#' : '+');
+        }
+        position.unmakeMove();
+        return san.toString();
+    }
+
+} // end San
@@ -0,0 +1,62 @@
+package com.chess.model;
+
+// random 64-bit keys used to hash positions. A position's key is the XOR of
+// the keys of its pieces, castling rights, en passant file and side to move,
+// so BitboardPosition can update it with a couple of XORs per change.
+// The keys come from a fixed seed so they are the same on every run and every
+// server. They are not Polyglot's keys, so opening books are looked up with
+// PolyglotHash instead
+public final class Zobrist {
+    private static final long[] PIECE_SQUARE = new long[12 * 64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long WHITE_TO_MOVE;
+
+    static {
+        long[] random = new long[781];
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < random.length; i++) {
+            // splitmix64
+            seed += 0x9E3779B97F4A7C15L;
+            long z = seed;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            random[i] = z ^ (z >>> 31);
+        }
+
+        System.arraycopy(random, 0, PIECE_SQUARE, 0, PIECE_SQUARE.length);
+        for (int rights = 0; rights < 16; rights++) {
+            long key = 0L;
+            for (int bit = 0; bit < 4; bit++) {
+                if ((rights & (1 << bit)) != 0) {
+                    key ^= random[768 + bit];
+                }
+            }
+            CASTLING[rights] = key;
+        }
+        System.arraycopy(random, 772, EN_PASSANT_FILE, 0, 8);
+        WHITE_TO_MOVE = random[780];
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(int code, int square) {
+        return PIECE_SQUARE[code * 64 + square];
+    }
+
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    // key for an en passant square, or 0 when there is none
+    public static long enPassant(int square) {
+        return square == BitboardPosition.NO_SQUARE ? 0L : EN_PASSANT_FILE[BitboardPosition.colOf(square)];
+    }
+
+    // key for the side to move (only white to move changes the hash)
+    public static long side(int colour) {
+        return colour == BitboardPosition.WHITE ? WHITE_TO_MOVE : 0L;
+    }
+
+} // end Zobrist
@@ -0,0 +1,62 @@
+package com.chess.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+// one queued engine request. The work is handed a flag that cancelling the
+// job sets; the engine polls it, so a running search stops within a few
+// thousand nodes and a job still in the queue never starts. A job that waited
+// in the queue past its deadline fails with a TimeoutException instead of
+// thinking for a client that has likely given up
+public final class EngineJob<T> extends CompletableFuture<T> implements Runnable {
+    private final String gameId;
+    private final Function<AtomicBoolean, T> work;
+    private final AtomicBoolean cancelled;
+    private final long startDeadline; // System.nanoTime() after which the job is not started
+    private final long timeoutMillis;
+
+    EngineJob(String gameId, Function<AtomicBoolean, T> work, long maxQueueWaitNanos, long timeoutMillis) {
+        this.gameId = gameId;
+        this.work = work;
+        this.cancelled = new AtomicBoolean();
+        this.startDeadline = System.nanoTime() + maxQueueWaitNanos;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    String getGameId() {
+        return gameId;
+    }
+
+    // the longest a client should wait for the job: the queue wait, the think
+    // time and a little slack
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public void run() {
+        if (isDone()) {
+            return;
+        }
+        if (System.nanoTime() - startDeadline > 0) {
+            completeExceptionally(new TimeoutException("Engine job waited too long to start."));
+            return;
+        }
+        // errors fail the job too, or its client and the game's job list
+        // would wait on it forever
+        try {
+            complete(work.apply(cancelled));
+        } catch (Throwable e) {
+            completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        cancelled.set(true);
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+}
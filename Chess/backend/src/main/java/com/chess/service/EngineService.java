@@ -0,0 +1,172 @@
+package com.chess.service;
+
+import com.chess.engine.Engine;
+import com.chess.engine.OpeningBook;
+import com.chess.engine.PolyglotHash;
+import com.chess.engine.SearchResult;
+import com.chess.model.BitboardPosition;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+// runs the computer player's searches with the configured time and thread
+// limits. Engine requests are queued for a small pool of dedicated workers,
+// never run on the web server's request threads, so a burst of them cannot
+// slow down ordinary moves; when the queue is full they are turned away. An
+// opening book, if one is configured, answers known positions without a search
+@Service
+public class EngineService {
+    private static final Logger log = LoggerFactory.getLogger(EngineService.class);
+
+    // how much longer than its queue wait and think time a job may take before
+    // its client is told to give up
+    private static final long TIMEOUT_SLACK_MILLIS = 1000;
+
+    private final Engine engine;
+    private final Duration moveTime;
+    private final Duration maxMoveTime;
+    private final int threads;
+    private final ThreadPoolExecutor workers;
+    private final int helperThreads;
+    private final long maxQueueWaitNanos;
+    private final ConcurrentMap<String, Set<EngineJob<?>>> jobsByGame;
+
+    public EngineService(@Value("${chess.engine.move-time:PT0.5S}") Duration moveTime,
+            @Value("${chess.engine.max-move-time:PT5S}") Duration maxMoveTime,
+            @Value("${chess.engine.max-depth:64}") int maxDepth,
+            @Value("${chess.engine.hash-size-mb:64}") int hashSizeMegabytes,
+            @Value("${chess.engine.threads:0}") int threads,
+            @Value("${chess.engine.helper-threads:0}") int helperThreads,
+            @Value("${chess.engine.workers:0}") int workers,
+            @Value("${chess.engine.queue-capacity:32}") int queueCapacity,
+            @Value("${chess.engine.max-queue-wait:PT2S}") Duration maxQueueWait,
+            @Value("${chess.engine.book-file:}") String bookFile,
+            @Value("${chess.engine.book-keys:}") String bookKeys) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int poolSize = workerCount(processors, workers);
+        this.helperThreads = helperCount(processors, poolSize, helperThreads);
+        this.engine = new Engine(maxDepth, hashSizeMegabytes, this.helperThreads, openBook(bookFile, bookKeys));
+        this.moveTime = moveTime;
+        this.maxMoveTime = maxMoveTime;
+        this.threads = threads > 0 ? threads : processors;
+        this.workers = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), Thread.ofPlatform().name("engine-worker-", 1).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.maxQueueWaitNanos = maxQueueWait.toNanos();
+        this.jobsByGame = new ConcurrentHashMap<>();
+    }
+
+    // the cores searches may use: all but one, so that analysis never takes
+    // every core from other requests
+    static int searchCores(int processors) {
+        return Math.max(1, processors - 1);
+    }
+
+    // each worker runs the main thread of one search, so the workers count
+    // against the search cores: half of them by default, and never more
+    static int workerCount(int processors, int configured) {
+        int cores = searchCores(processors);
+        return configured > 0 ? Math.min(configured, cores) : Math.max(1, cores / 2);
+    }
+
+    // the helper threads all searches share get the search cores the workers
+    // leave, or fewer if configured so
+    static int helperCount(int processors, int workerCount, int configured) {
+        int left = searchCores(processors) - workerCount;
+        return configured > 0 ? Math.min(configured, left) : left;
+    }
+
+    // the most threads searching at once: one per worker plus the helpers
+    int maxSearchThreads() {
+        return workers.getMaximumPoolSize() + helperThreads;
+    }
+
+    // the time the engine will think for when asked for the given time, or the
+    // default move time if none is given, capped at the maximum move time
+    public Duration moveTime(Duration requestedTime) {
+        Duration budget = requestedTime == null ? moveTime : requestedTime;
+        return budget.compareTo(maxMoveTime) > 0 ? maxMoveTime : budget;
+    }
+
+    // searches for the best move within the given time and thread count (null
+    // for the default, which also caps it), on the calling thread. Setting
+    // cancelled stops the search early
+    public SearchResult bestMove(BitboardPosition position, long[] previousKeys, Duration budget,
+            Integer requestedThreads, AtomicBoolean cancelled) {
+        int searchThreads = requestedThreads == null ? threads : Math.min(requestedThreads, threads);
+        return engine.bestMove(position, previousKeys, Math.max(1, budget.toNanos()), searchThreads, cancelled);
+    }
+
+    // queues work for one game that will think for up to the given time; throws
+    // a RejectedExecutionException if the queue is full
+    public <T> EngineJob<T> submit(String gameId, Duration budget, Function<AtomicBoolean, T> work) {
+        long timeoutMillis = TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos) + budget.toMillis()
+                + TIMEOUT_SLACK_MILLIS;
+        EngineJob<T> job = new EngineJob<>(gameId, work, maxQueueWaitNanos, timeoutMillis);
+        Set<EngineJob<?>> jobs = jobsByGame.computeIfAbsent(gameId, id -> ConcurrentHashMap.newKeySet());
+        jobs.add(job);
+        job.whenComplete((result, error) -> forget(job));
+        try {
+            workers.execute(job);
+        } catch (RejectedExecutionException e) {
+            forget(job);
+            throw e;
+        }
+        return job;
+    }
+
+    // cancels every queued or running job of a game
+    public void cancel(String gameId) {
+        Set<EngineJob<?>> jobs = jobsByGame.get(gameId);
+        if (jobs != null) {
+            for (EngineJob<?> job : jobs) {
+                job.cancel(true);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        engine.close();
+    }
+
+    private static OpeningBook openBook(String bookFile, String bookKeys) {
+        if (bookFile.isBlank()) {
+            return null;
+        }
+        try {
+            PolyglotHash hash = bookKeys.isBlank() ? PolyglotHash.withDefaultKeys()
+                    : PolyglotHash.withKeysFrom(Path.of(bookKeys));
+            OpeningBook book = OpeningBook.open(Path.of(bookFile), hash);
+            log.info("Opening book {} has {} moves", bookFile, book.size());
+            return book;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open opening book " + bookFile, e);
+        }
+    }
+
+    private void forget(EngineJob<?> job) {
+        jobsByGame.computeIfPresent(job.getGameId(), (id, jobs) -> {
+            jobs.remove(job);
+            return jobs.isEmpty() ? null : jobs;
+        });
+    }
+
+}
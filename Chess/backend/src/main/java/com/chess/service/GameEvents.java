@@ -0,0 +1,181 @@
+package com.chess.service;
+
+import com.chess.model.MoveEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// pushes the moves made in each game to the clients watching it as
+// server-sent events, so they do not have to poll the board. Events are
+// published from the game's messages, so they are never written to a client
+// there: each stream has a bounded buffer of its own that a virtual thread
+// sends from, and a client too slow to keep its buffer from filling up is
+// dropped rather than holding up the game
+@Component
+public class GameEvents {
+    private final ConcurrentMap<String, List<Subscriber>> subscribers;
+    private final long timeoutMillis;
+    private final int bufferSize;
+
+    public GameEvents(@Value("${chess.events.timeout:30m}") Duration timeout,
+            @Value("${chess.events.buffer-size:64}") int bufferSize) {
+        this.subscribers = new ConcurrentHashMap<>();
+        this.timeoutMillis = timeout.toMillis();
+        this.bufferSize = bufferSize;
+    }
+
+    // opens an event stream for a game
+    public SseEmitter subscribe(String gameId) {
+        return subscribe(gameId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(String gameId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter, bufferSize);
+        subscribers.compute(gameId, (id, list) -> {
+            List<Subscriber> updated = list == null ? new CopyOnWriteArrayList<>() : list;
+            updated.add(subscriber);
+            return updated;
+        });
+        Runnable unsubscribe = () -> unsubscribe(gameId, subscriber);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return emitter;
+    }
+
+    // sends the result of a successful move to everyone watching the game
+    public void publishMove(String gameId, String from, String to, int result, long positionKey) {
+        publish(gameId, new MoveEvent(typeOf(result), from, to, result, version(positionKey)));
+    }
+
+    public void publishRestart(String gameId, long positionKey) {
+        publish(gameId, new MoveEvent("restart", null, null, 0, version(positionKey)));
+    }
+
+    // closes every stream of a game that no longer exists
+    public void close(String gameId) {
+        List<Subscriber> list = subscribers.remove(gameId);
+        if (list != null) {
+            list.forEach(Subscriber::close);
+        }
+    }
+
+    public int subscriberCount(String gameId) {
+        List<Subscriber> list = subscribers.get(gameId);
+        return list == null ? 0 : list.size();
+    }
+
+    // the position key as the clients see it, also used as the board's ETag
+    public static String version(long positionKey) {
+        return Long.toHexString(positionKey);
+    }
+
+    // queues an event for everyone watching the game without waiting for any
+    // of them
+    private void publish(String gameId, MoveEvent event) {
+        List<Subscriber> list = subscribers.get(gameId);
+        if (list == null) {
+            return;
+        }
+        for (Subscriber subscriber : list) {
+            if (!subscriber.offer(event)) {
+                // the client has gone away or stopped reading
+                subscriber.close();
+                unsubscribe(gameId, subscriber);
+            }
+        }
+    }
+
+    private void unsubscribe(String gameId, Subscriber subscriber) {
+        subscribers.computeIfPresent(gameId, (id, list) -> {
+            list.remove(subscriber);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    // names the event a move result code stands for
+    private static String typeOf(int result) {
+        switch (result) {
+            case 2:
+            case 3:
+                return "checkmate";
+            case 4:
+            case 5:
+                return "check";
+            case 6:
+            case 7:
+                return "castle";
+            case 8:
+                return "stalemate";
+            case 9:
+            case 10:
+                return "draw";
+            default:
+                return "move";
+        }
+    }
+
+    // one client's event stream with the events waiting to be sent to it. A
+    // virtual thread is started to send them only while some are waiting,
+    // and sends them one at a time, in order
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<MoveEvent> buffer;
+        private final AtomicBoolean sending;
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter, int bufferSize) {
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+            this.sending = new AtomicBoolean();
+        }
+
+        // returns false if the stream is closed or its buffer is full
+        private boolean offer(MoveEvent event) {
+            if (closed || !buffer.offer(event)) {
+                return false;
+            }
+            if (sending.compareAndSet(false, true)) {
+                Thread.ofVirtual().name("game-events").start(this::send);
+            }
+            return true;
+        }
+
+        // an event offered after the last poll but before the flag is cleared
+        // starts no thread, so the buffer is checked once more after clearing it
+        private void send() {
+            do {
+                MoveEvent event;
+                while (!closed && (event = buffer.poll()) != null) {
+                    try {
+                        emitter.send(SseEmitter.event().name(event.getType()).id(event.getVersion()).data(event));
+                    } catch (IOException | IllegalStateException e) {
+                        // the client has gone away; the emitter's error
+                        // callback unsubscribes it
+                        closed = true;
+                        emitter.completeWithError(e);
+                    }
+                }
+                sending.set(false);
+            } while (!closed && !buffer.isEmpty() && sending.compareAndSet(false, true));
+        }
+
+        // completes the stream off the caller's thread, which may be running
+        // one of the game's messages while a send is stuck on the client
+        private void close() {
+            closed = true;
+            Thread.ofVirtual().name("game-events").start(emitter::complete);
+        }
+    }
+
+}
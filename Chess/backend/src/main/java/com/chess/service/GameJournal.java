@@ -0,0 +1,288 @@
+package com.chess.service;
+
+import com.chess.model.ChessGame;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// makes games survive a restart of the server. Every accepted move is
+// appended to the game's log as a two byte record (source and destination
+// square), and every so many moves the whole game is written to a snapshot
+// that remembers how much of the log it covers. A game is recovered from its
+// latest snapshot plus the log records after it, so recovery only replays the
+// moves made since that snapshot.
+//
+// Writes go to the operating system straight away, so they survive the server
+// process dying; they are forced to disk for all games together on a timer
+// rather than once per move. A game's journal is only written from the game's
+// own messages (see GameSession), one at a time
+@Component
+public class GameJournal {
+    private static final Logger log = LoggerFactory.getLogger(GameJournal.class);
+    private static final String LOG_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final int RECORD_SIZE = 2;
+    private static final byte RESTART = (byte) 0xFF; // a record of two of these restarts the game
+
+    private final Path directory; // null when journaling is off
+    private final int snapshotInterval;
+    private final ConcurrentMap<String, GameLog> logs;
+
+    public GameJournal(@Value("${chess.journal.directory:}") String directory,
+            @Value("${chess.journal.snapshot-interval:64}") int snapshotInterval) {
+        this.directory = directory.isBlank() ? null : Path.of(directory);
+        this.snapshotInterval = snapshotInterval;
+        this.logs = new ConcurrentHashMap<>();
+        if (this.directory != null) {
+            try {
+                Files.createDirectories(this.directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create game journal directory " + directory, e);
+            }
+        }
+    }
+
+    // starts the journal of a new game with a snapshot of its first position
+    public void create(String gameId, ChessGame chessGame) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            GameLog gameLog = open(gameId);
+            gameLog.channel.truncate(0);
+            writeSnapshot(gameId, chessGame, 0);
+            gameLog.movesSinceSnapshot = 0;
+        } catch (IOException e) {
+            log.warn("Could not start the journal of game {}", gameId, e);
+        }
+    }
+
+    // records a move the game has just accepted, taking a snapshot if enough
+    // moves have been logged since the last one
+    public void recordMove(String gameId, ChessGame chessGame, String from, String to) {
+        append(gameId, chessGame, (byte) square(from), (byte) square(to));
+    }
+
+    // records that the game was started again from the initial position
+    public void recordRestart(String gameId, ChessGame chessGame) {
+        append(gameId, chessGame, RESTART, RESTART);
+    }
+
+    // closes the game's log, keeping its files so it can be recovered or
+    // appended to later
+    public void close(String gameId) {
+        GameLog gameLog = logs.remove(gameId);
+        if (gameLog != null) {
+            closeQuietly(gameId, gameLog);
+        }
+    }
+
+    // closes the game's log and deletes its files
+    public void delete(String gameId) {
+        if (directory == null) {
+            return;
+        }
+        close(gameId);
+        try {
+            Files.deleteIfExists(snapshotFile(gameId));
+            Files.deleteIfExists(logFile(gameId));
+        } catch (IOException e) {
+            log.warn("Could not delete the journal of game {}", gameId, e);
+        }
+    }
+
+    // the ids of every game with a journal on disk
+    public List<String> gameIds() {
+        List<String> gameIds = new ArrayList<>();
+        if (directory == null) {
+            return gameIds;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                gameIds.add(name.substring(0, name.length() - SNAPSHOT_SUFFIX.length()));
+            }
+        } catch (IOException e) {
+            log.warn("Could not list the game journal directory {}", directory, e);
+        }
+        return gameIds;
+    }
+
+    // rebuilds a game from its latest snapshot and the moves logged after it;
+    // returns null if the journal cannot be read. A record cut short by a crash
+    // is dropped
+    public ChessGame recover(String gameId) {
+        try {
+            ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(snapshotFile(gameId)));
+            long offset = snapshot.getLong();
+            byte[] state = new byte[snapshot.remaining()];
+            snapshot.get(state);
+            ChessGame chessGame = ChessGame.fromSnapshot(state);
+
+            GameLog gameLog = open(gameId);
+            long size = gameLog.channel.size();
+            long end = offset + (size - offset) / RECORD_SIZE * RECORD_SIZE;
+            ByteBuffer records = ByteBuffer.allocate((int) Math.max(0, end - offset));
+            while (records.hasRemaining() && gameLog.channel.read(records, offset + records.position()) >= 0) {
+                // read until the buffer is full
+            }
+            records.flip();
+            while (records.remaining() >= RECORD_SIZE) {
+                byte from = records.get();
+                byte to = records.get();
+                if (from == RESTART && to == RESTART) {
+                    chessGame = new ChessGame();
+                } else {
+                    chessGame.makeMove(squareName(from), squareName(to));
+                }
+                gameLog.movesSinceSnapshot++;
+            }
+            if (end < size) {
+                gameLog.channel.truncate(end);
+            }
+            gameLog.channel.position(end);
+            if (gameLog.movesSinceSnapshot >= snapshotInterval) {
+                writeSnapshot(gameId, chessGame, end);
+                gameLog.movesSinceSnapshot = 0;
+            }
+            return chessGame;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not recover game {} from its journal", gameId, e);
+            close(gameId);
+            return null;
+        }
+    }
+
+    // forces the logs written since the last sync to disk
+    @Scheduled(fixedDelayString = "${chess.journal.sync-interval:PT0.1S}")
+    public void sync() {
+        for (Map.Entry<String, GameLog> entry : logs.entrySet()) {
+            GameLog gameLog = entry.getValue();
+            if (gameLog.dirty) {
+                gameLog.dirty = false;
+                try {
+                    gameLog.channel.force(false);
+                } catch (IOException e) {
+                    if (gameLog.channel.isOpen()) {
+                        log.warn("Could not sync the journal of game {}", entry.getKey(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sync();
+        for (String gameId : logs.keySet()) {
+            close(gameId);
+        }
+    }
+
+    private void append(String gameId, ChessGame chessGame, byte first, byte second) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            GameLog gameLog = open(gameId);
+            ByteBuffer record = ByteBuffer.wrap(new byte[] { first, second });
+            while (record.hasRemaining()) {
+                gameLog.channel.write(record);
+            }
+            gameLog.dirty = true;
+            if (++gameLog.movesSinceSnapshot >= snapshotInterval) {
+                writeSnapshot(gameId, chessGame, gameLog.channel.position());
+                gameLog.movesSinceSnapshot = 0;
+            }
+        } catch (IOException e) {
+            log.warn("Could not journal a move of game {}", gameId, e);
+        }
+    }
+
+    // writes the snapshot to a temporary file first so a crash never leaves a
+    // half written one behind
+    private void writeSnapshot(String gameId, ChessGame chessGame, long offset) throws IOException {
+        byte[] state = chessGame.toSnapshot();
+        Path file = snapshotFile(gameId);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer snapshot = ByteBuffer.allocate(8 + state.length).putLong(offset).put(state).flip();
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private GameLog open(String gameId) throws IOException {
+        GameLog gameLog = logs.get(gameId);
+        if (gameLog == null) {
+            FileChannel channel = FileChannel.open(logFile(gameId), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.READ);
+            channel.position(channel.size());
+            gameLog = new GameLog(channel);
+            logs.put(gameId, gameLog);
+        }
+        return gameLog;
+    }
+
+    private void closeQuietly(String gameId, GameLog gameLog) {
+        try {
+            if (gameLog.dirty) {
+                gameLog.channel.force(false);
+            }
+            gameLog.channel.close();
+        } catch (IOException e) {
+            log.warn("Could not close the journal of game {}", gameId, e);
+        }
+    }
+
+    private Path logFile(String gameId) {
+        return directory.resolve(gameId + LOG_SUFFIX);
+    }
+
+    private Path snapshotFile(String gameId) {
+        return directory.resolve(gameId + SNAPSHOT_SUFFIX);
+    }
+
+    // squares are stored as row * 8 + column in the game's own notation
+    private static int square(String name) {
+        return (name.charAt(1) - '1') * 8 + (name.charAt(0) - 'A');
+    }
+
+    private static String squareName(byte square) {
+        return "" + (char) ('A' + (square & 7)) + (char) ('1' + (square >> 3));
+    }
+
+    // the open log of one game; only written from the game's messages
+    private static final class GameLog {
+        private final FileChannel channel;
+        private volatile boolean dirty;
+        private int movesSinceSnapshot;
+
+        private GameLog(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+}
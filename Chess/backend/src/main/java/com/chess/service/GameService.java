@@ -1,27 +1,245 @@
 package com.chess.service;
 
+import com.chess.engine.SearchResult;
+import com.chess.model.BitboardPosition;
 import com.chess.model.ChessGame;
+import com.chess.model.EngineMove;
+import com.chess.model.LegalMove;
+import com.chess.model.MoveBatchResult;
+import com.chess.model.MoveRequest;
+import com.chess.model.PackedMove;
+import com.chess.model.PgnGame;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
 @Service
 public class GameService {
-    private ChessGame chessGame;
+    // the game used by the original single-table endpoints
+    public static final String DEFAULT_GAME_ID = "default";
+
+    private final GameStore gameStore;
+    private final GameEvents gameEvents;
+    private final GameJournal journal;
+    private final EngineService engineService;
+
+    public GameService(GameStore gameStore, GameEvents gameEvents, GameJournal journal,
+            EngineService engineService) {
+        this.gameStore = gameStore;
+        this.gameEvents = gameEvents;
+        this.journal = journal;
+        this.engineService = engineService;
+        gameStore.recover();
+        if (gameStore.find(DEFAULT_GAME_ID) == null) {
+            gameStore.add(DEFAULT_GAME_ID, new ChessGame());
+        }
+    }
+
+    // starts a new game and returns its id
+    public String createGame() {
+        return createGame(new ChessGame());
+    }
+
+    // starts a new game from a FEN position or a replayed PGN game and returns
+    // its id
+    public String createGame(ChessGame chessGame) {
+        String gameId = UUID.randomUUID().toString();
+        gameStore.add(gameId, chessGame);
+        return gameId;
+    }
+
+    public boolean hasGame(String gameId) {
+        return gameStore.find(gameId) != null;
+    }
+
+    // removes a game, returning false if there was no such game
+    public boolean endGame(String gameId) {
+        if (DEFAULT_GAME_ID.equals(gameId)) {
+            restartGame(gameId);
+            return true;
+        }
+        if (!gameStore.remove(gameId)) {
+            return false;
+        }
+        engineService.cancel(gameId);
+        gameEvents.close(gameId);
+        return true;
+    }
+
+    // returns null if there is no such game
+    public String[][] getBoard(String gameId) {
+        return withGame(gameId, ChessGame::getBoard);
+    }
+
+    // returns null if there is no such game
+    public PgnGame getPgn(String gameId) {
+        return withGame(gameId, ChessGame::toPgn);
+    }
+
+    // the legal moves of the side to move, or only those of the piece on a
+    // square if from is given; returns null if there is no such game. They are
+    // cached with the game, so asking again before the next move is cheap
+    public List<LegalMove> getLegalMoves(String gameId, String from) {
+        return withGame(gameId, chessGame -> from == null ? chessGame.getLegalMoves() : chessGame.getLegalMoves(from));
+    }
+
+    // gets the position as FEN, unless the client's If-None-Match header already
+    // names it; returns null if there is no such game
+    public VersionedBoard<String> getFen(String gameId, String ifNoneMatch) {
+        return versioned(gameId, ifNoneMatch, ChessGame::toFen);
+    }
+
+    // like getFen, for the packed board (see ChessGame.toPackedBoard)
+    public VersionedBoard<byte[]> getPackedBoard(String gameId, String ifNoneMatch) {
+        return versioned(gameId, ifNoneMatch, ChessGame::toPackedBoard);
+    }
 
-    public GameService() {
-        this.chessGame = new ChessGame();
+    // returns null if there is no such game. Successful moves are journaled and
+    // queued for the game's subscribers in the same message that makes them,
+    // so both see the moves in the order they were made
+    public Object makeMove(String gameId, String from, String to) {
+        return withGame(gameId, chessGame -> applyMove(gameId, chessGame, from, to));
+    }
+
+    // makes a list of moves in order in a single message, stopping at the first
+    // one that is not made; returns null if there is no such game. A move that
+    // fails with an error rather than a result code is reported as 0
+    public MoveBatchResult makeMoves(String gameId, List<MoveRequest> moves) {
+        return withGame(gameId, chessGame -> {
+            List<Integer> results = new ArrayList<>(moves.size());
+            for (MoveRequest move : moves) {
+                Object result = applyMove(gameId, chessGame, move.getFrom(), move.getTo());
+                int code = result instanceof Integer ? (Integer) result : 0;
+                results.add(code);
+                if (code <= 0) {
+                    return new MoveBatchResult(results, false);
+                }
+            }
+            return new MoveBatchResult(results, true);
+        });
+    }
+
+    // queues a request for the engine to choose and make the move for the side
+    // to move, thinking for the given time on the given number of threads (null
+    // for the defaults); returns null if there is no such game. The job yields
+    // null if the game is gone by the time it runs. Throws a
+    // RejectedExecutionException if the engine is too busy
+    public EngineJob<EngineMove> requestEngineMove(String gameId, Duration moveTime, Integer threads) {
+        if (!hasGame(gameId)) {
+            return null;
+        }
+        Duration budget = engineService.moveTime(moveTime);
+        return engineService.submit(gameId, budget,
+                cancelled -> makeEngineMove(gameId, budget, threads, cancelled));
+    }
+
+    // returns false if there is no such game
+    public boolean cancelEngineMoves(String gameId) {
+        if (!hasGame(gameId)) {
+            return false;
+        }
+        engineService.cancel(gameId);
+        return true;
+    }
+
+    // the search runs on an engine worker, outside the game's mailbox, so
+    // other requests for the game are not held up while it thinks. The move is
+    // only made if the position is unchanged and the job was not cancelled (by
+    // a restart, say) in the meantime; otherwise the result has no move and a
+    // result code of 0
+    private EngineMove makeEngineMove(String gameId, Duration budget, Integer threads, AtomicBoolean cancelled) {
+        SearchStart start = withGame(gameId, SearchStart::new);
+        if (start == null) {
+            return null;
+        }
+        if (start.position == null) {
+            return new EngineMove(null, null, -6, 0, 0);
+        }
+        BitboardPosition position = start.position;
+
+        SearchResult search = engineService.bestMove(position, start.previousKeys, budget, threads, cancelled);
+        return withGame(gameId, chessGame -> {
+            if (cancelled.get() || chessGame.getPositionKey() != position.getKey()
+                    || search.getMove() == PackedMove.NONE) {
+                return new EngineMove(null, null, 0, search.getScore(), search.getDepth());
+            }
+            String from = ChessGame.sourceName(search.getMove());
+            String to = ChessGame.destinationName(search.getMove());
+            Object result = applyMove(gameId, chessGame, from, to);
+            int code = result instanceof Integer ? (Integer) result : 0;
+            return new EngineMove(from, to, code, search.getScore(), search.getDepth());
+        });
+    }
+
+    // returns null if there is no such game
+    public String restartGame(String gameId) {
+        return gameStore.call(gameId, session -> {
+            session.restart();
+            engineService.cancel(gameId);
+            journal.recordRestart(gameId, session.getChessGame());
+            gameEvents.publishRestart(gameId, session.getChessGame().getPositionKey());
+            return "Game restarted.";
+        });
     }
 
     public String[][] getBoard() {
-        return chessGame.getBoard();
+        return getBoard(DEFAULT_GAME_ID);
+    }
+
+    public List<LegalMove> getLegalMoves(String from) {
+        return getLegalMoves(DEFAULT_GAME_ID, from);
     }
 
     public Object makeMove(String from, String to) {
-        return chessGame.makeMove(from, to);
+        return makeMove(DEFAULT_GAME_ID, from, to);
     }
 
     public String restartGame() {
-        this.chessGame = new ChessGame();
-        return "Game restarted.";
+        return restartGame(DEFAULT_GAME_ID);
+    }
+
+    private Object applyMove(String gameId, ChessGame chessGame, String from, String to) {
+        Object result = chessGame.makeMove(from, to);
+        if (result instanceof Integer code && code > 0) {
+            journal.recordMove(gameId, chessGame, from, to);
+            gameEvents.publishMove(gameId, from, to, code, chessGame.getPositionKey());
+        }
+        return result;
+    }
+
+    // renders a board only if the client does not already have its version
+    private <T> VersionedBoard<T> versioned(String gameId, String ifNoneMatch, Function<ChessGame, T> render) {
+        return withGame(gameId, chessGame -> {
+            String version = GameEvents.version(chessGame.getPositionKey());
+            if (VersionedBoard.matches(ifNoneMatch, version)) {
+                return VersionedBoard.notModified(version);
+            }
+            return new VersionedBoard<>(version, render.apply(chessGame));
+        });
+    }
+
+    // runs an action as a message to the game, after every request sent to
+    // it before, while requests for other games run alongside; returns null if
+    // there is no such game
+    private <T> T withGame(String gameId, Function<ChessGame, T> action) {
+        return gameStore.call(gameId, session -> action.apply(session.getChessGame()));
+    }
+
+    // a copy of what the engine needs from a game, taken in one of its
+    // messages; the position is null if the game is over
+    private static final class SearchStart {
+        private final BitboardPosition position;
+        private final long[] previousKeys;
+
+        private SearchStart(ChessGame chessGame) {
+            this.position = chessGame.isGameOver() ? null : chessGame.copyPosition();
+            this.previousKeys = chessGame.recentPositionKeys();
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,111 @@
+package com.chess.service;
+
+import com.chess.model.ChessGame;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+// one game hosted by the server, run as an actor: every request made to it is
+// a message in its mailbox, and the messages are run one at a time, in the
+// order they were sent, by a virtual thread that is only started while the
+// mailbox has work. The game and the eviction flag are only touched by that
+// thread, so they need no lock, an idle game holds no thread at all, and
+// different games run in parallel
+class GameSession {
+    // completes the answer to a message that reached the session after it was
+    // evicted; the sender must look the game up again
+    private static final RuntimeException EVICTED = new RuntimeException("Game session was evicted", null, false, false) {
+    };
+
+    private final String id;
+    private final Queue<Runnable> mailbox;
+    private final AtomicBoolean scheduled; // a thread is draining the mailbox
+    private ChessGame chessGame;
+    private boolean evicted;
+    private volatile long lastAccess; // System.nanoTime() of the last request
+
+    GameSession(String id, ChessGame chessGame) {
+        this.id = id;
+        this.mailbox = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean();
+        this.chessGame = chessGame;
+        this.evicted = false;
+        this.lastAccess = System.nanoTime();
+    }
+
+    String getId() {
+        return id;
+    }
+
+    // sends a message to the game; the answer completes with what it returns,
+    // or with the exception it throws. A message that arrives after the
+    // session was evicted is not run and its answer fails with wasEvicted
+    <T> CompletableFuture<T> ask(Function<GameSession, T> message) {
+        CompletableFuture<T> answer = new CompletableFuture<>();
+        mailbox.add(() -> {
+            if (evicted) {
+                answer.completeExceptionally(EVICTED);
+                return;
+            }
+            try {
+                answer.complete(message.apply(this));
+            } catch (Throwable e) {
+                answer.completeExceptionally(e);
+            }
+        });
+        if (scheduled.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("game-" + id).start(this::drain);
+        }
+        return answer;
+    }
+
+    static boolean wasEvicted(Throwable e) {
+        return e == EVICTED;
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    void touch() {
+        lastAccess = System.nanoTime();
+    }
+
+    // runs messages until the mailbox is empty. A message sent after the last
+    // poll but before the flag is cleared finds the flag still set and starts
+    // no thread, so the mailbox is checked once more after clearing it
+    private void drain() {
+        do {
+            Runnable message;
+            while ((message = mailbox.poll()) != null) {
+                message.run();
+            }
+            scheduled.set(false);
+        } while (!mailbox.isEmpty() && scheduled.compareAndSet(false, true));
+    }
+
+    // the methods below are only called from messages
+
+    ChessGame getChessGame() {
+        return chessGame;
+    }
+
+    // replaces the game with a fresh one
+    void restart() {
+        chessGame = new ChessGame();
+    }
+
+    // an evicted session has been dropped from the store; messages still
+    // waiting in its mailbox are answered with wasEvicted
+    boolean isEvicted() {
+        return evicted;
+    }
+
+    void markEvicted() {
+        evicted = true;
+    }
+
+}
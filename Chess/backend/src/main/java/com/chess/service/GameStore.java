@@ -0,0 +1,318 @@
+package com.chess.service;
+
+import com.chess.model.ChessGame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+// keeps the games hosted by this server in memory, bounded by a maximum count
+// and an idle timeout. Evicted games are optionally spilled to a snapshot file
+// and loaded back transparently the next time they are requested. When the
+// journal is on, games are also recovered from it after a restart
+@Component
+public class GameStore {
+    private static final Logger log = LoggerFactory.getLogger(GameStore.class);
+    private static final Pattern GAME_ID = Pattern.compile("[A-Za-z0-9-]+");
+    private static final String SNAPSHOT_SUFFIX = ".game";
+
+    private final ConcurrentMap<String, GameSession> games;
+    // the same games, least recently used first, so eviction finds the oldest
+    // without looking at every game; guarded by its own monitor, which is only
+    // held to reorder or read the first few entries
+    private final LinkedHashMap<String, GameSession> recentlyUsed;
+    private final int maxGames;
+    private final long idleTimeoutNanos;
+    private final Path spillDirectory; // null when evicted games are discarded
+    private final GameJournal journal;
+
+    public GameStore(@Value("${chess.games.max-active:10000}") int maxGames,
+            @Value("${chess.games.idle-timeout:30m}") Duration idleTimeout,
+            @Value("${chess.games.spill-directory:}") String spillDirectory, GameJournal journal) {
+        this.games = new ConcurrentHashMap<>();
+        this.recentlyUsed = new LinkedHashMap<>(16, 0.75f, true);
+        this.journal = journal;
+        this.maxGames = maxGames;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.spillDirectory = spillDirectory.isBlank() ? null : Path.of(spillDirectory);
+        if (this.spillDirectory != null) {
+            try {
+                Files.createDirectories(this.spillDirectory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create game spill directory " + spillDirectory, e);
+            }
+        }
+    }
+
+    // adds a new game, making room for it first if the store is full
+    public GameSession add(String gameId, ChessGame chessGame) {
+        makeRoom();
+        // the journal entry is the session's first message, so it is written
+        // before anything a request sends once the game can be found
+        GameSession session = new GameSession(gameId, chessGame);
+        CompletableFuture<Void> created = session.ask(ignored -> {
+            journal.create(gameId, chessGame);
+            return null;
+        });
+        games.put(gameId, session);
+        track(session);
+        await(created);
+        return session;
+    }
+
+    // loads every journaled game back into memory after a restart, except the
+    // ones that were spilled, which are reloaded when next requested. Returns
+    // how many games were recovered
+    public int recover() {
+        int recovered = 0;
+        for (String gameId : journal.gameIds()) {
+            if (!GAME_ID.matcher(gameId).matches()
+                    || (spillDirectory != null && Files.exists(snapshotFile(gameId)))) {
+                continue;
+            }
+            ChessGame chessGame = journal.recover(gameId);
+            if (chessGame != null) {
+                makeRoom();
+                GameSession session = new GameSession(gameId, chessGame);
+                games.put(gameId, session);
+                track(session);
+                recovered++;
+            }
+        }
+        if (recovered > 0) {
+            log.info("Recovered {} games from the journal", recovered);
+        }
+        return recovered;
+    }
+
+    // finds a game in memory, or reloads it from its spilled snapshot; returns
+    // null if the game does not exist
+    public GameSession find(String gameId) {
+        GameSession session = games.get(gameId);
+        if (session != null || spillDirectory == null || !GAME_ID.matcher(gameId).matches()) {
+            return session;
+        }
+        // the snapshot is read outside the map so no other update waits on
+        // the disk. Of two requests reloading the game at once, the one whose
+        // session is kept deletes the snapshot, so the other still finds it
+        // either on disk or in the map
+        GameSession reloaded = reload(gameId);
+        if (reloaded == null) {
+            return games.get(gameId);
+        }
+        makeRoom();
+        GameSession kept = games.putIfAbsent(gameId, reloaded);
+        if (kept != null) {
+            return kept;
+        }
+        track(reloaded);
+        // the snapshot is deleted as one of the game's messages, in order with
+        // the spill of any eviction, so a snapshot that eviction has just
+        // written again is never deleted: the game is marked evicted by then
+        // and the delete is not run
+        try {
+            await(reloaded.ask(ignored -> {
+                deleteSnapshot(gameId);
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            if (!GameSession.wasEvicted(e)) {
+                throw e;
+            }
+        }
+        return reloaded;
+    }
+
+    // sends an action to a game and waits for its answer, looking the game up
+    // again if it was evicted before the action ran; returns null if there is
+    // no such game
+    <T> T call(String gameId, Function<GameSession, T> action) {
+        while (true) {
+            GameSession session = find(gameId);
+            if (session == null) {
+                return null;
+            }
+            touch(session);
+            try {
+                return await(session.ask(action));
+            } catch (RuntimeException e) {
+                if (!GameSession.wasEvicted(e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // removes a game along with any spilled snapshot of it
+    public boolean remove(String gameId) {
+        Boolean removed = call(gameId, session -> {
+            session.markEvicted();
+            games.remove(gameId, session);
+            untrack(session);
+            journal.delete(gameId);
+            return true;
+        });
+        return removed != null;
+    }
+
+    public int size() {
+        return games.size();
+    }
+
+    // drops every game nobody has used for longer than the idle timeout. The
+    // games are visited oldest first, so the walk stops at the first one that
+    // is still in use
+    @Scheduled(fixedDelayString = "${chess.games.eviction-interval:PT1M}")
+    public void evictIdleGames() {
+        long now = System.nanoTime();
+        List<GameSession> idle = new ArrayList<>();
+        synchronized (recentlyUsed) {
+            for (GameSession session : recentlyUsed.values()) {
+                if (now - session.getLastAccess() <= idleTimeoutNanos) {
+                    break;
+                }
+                idle.add(session);
+            }
+        }
+        for (GameSession session : idle) {
+            evict(session);
+        }
+    }
+
+    // evicts games until there is room for one more
+    private void makeRoom() {
+        while (games.size() >= maxGames && evictLeastRecentlyUsed()) {
+            // keep evicting until there is room
+        }
+    }
+
+    private boolean evictLeastRecentlyUsed() {
+        GameSession oldest = null;
+        synchronized (recentlyUsed) {
+            for (GameSession session : recentlyUsed.values()) {
+                if (!GameService.DEFAULT_GAME_ID.equals(session.getId())) {
+                    oldest = session;
+                    break;
+                }
+            }
+        }
+        return oldest != null && evict(oldest);
+    }
+
+    private void track(GameSession session) {
+        synchronized (recentlyUsed) {
+            recentlyUsed.put(session.getId(), session);
+        }
+    }
+
+    private void untrack(GameSession session) {
+        synchronized (recentlyUsed) {
+            recentlyUsed.remove(session.getId(), session);
+        }
+    }
+
+    // marks the game as just used, moving it to the back of the eviction order
+    private void touch(GameSession session) {
+        session.touch();
+        synchronized (recentlyUsed) {
+            recentlyUsed.get(session.getId());
+        }
+    }
+
+    // spills and removes one game; this runs as one of the game's messages,
+    // so no request is halfway through a move while the snapshot is taken
+    private boolean evict(GameSession session) {
+        if (GameService.DEFAULT_GAME_ID.equals(session.getId())) {
+            return false;
+        }
+        try {
+            return await(session.ask(ignored -> {
+                if (spillDirectory != null && spill(session)) {
+                    journal.close(session.getId());
+                } else {
+                    journal.delete(session.getId());
+                }
+                session.markEvicted();
+                games.remove(session.getId(), session);
+                untrack(session);
+                return true;
+            }));
+        } catch (RuntimeException e) {
+            if (GameSession.wasEvicted(e)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    // waits for a game's answer, rethrowing what the message threw
+    private static <T> T await(CompletableFuture<T> answer) {
+        try {
+            return answer.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private boolean spill(GameSession session) {
+        Path file = snapshotFile(session.getId());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.write(temporary, session.getChessGame().toSnapshot());
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not spill game {}, it is discarded", session.getId(), e);
+            return false;
+        }
+    }
+
+    // loads a spilled game; returns null if there is none
+    private GameSession reload(String gameId) {
+        try {
+            return new GameSession(gameId, ChessGame.fromSnapshot(Files.readAllBytes(snapshotFile(gameId))));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Could not reload spilled game {}", gameId, e);
+            return null;
+        }
+    }
+
+    private void deleteSnapshot(String gameId) {
+        try {
+            Files.deleteIfExists(snapshotFile(gameId));
+        } catch (IOException e) {
+            log.warn("Could not delete the spilled snapshot of game {}", gameId, e);
+        }
+    }
+
+    private Path snapshotFile(String gameId) {
+        return spillDirectory.resolve(gameId + SNAPSHOT_SUFFIX);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.chess.service;
+
+import com.chess.model.ImportSummary;
+import com.chess.model.PgnGame;
+import com.chess.model.PgnReader;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+// validates PGN archives of any size: games are parsed one at a time from the
+// stream and replayed on a fixed pool of workers. Each import may only have a
+// bounded number of games waiting for a worker, so reading stalls instead of
+// memory growing when the workers fall behind
+@Component
+public class PgnImporter {
+    private static final int MAX_ERRORS = 20;
+
+    private final ExecutorService workers;
+    private final int maxPendingGames;
+
+    public PgnImporter(@Value("${chess.import.threads:0}") int threads,
+            @Value("${chess.import.max-pending-games:256}") int maxPendingGames) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.workers = Executors.newFixedThreadPool(poolSize);
+        this.maxPendingGames = maxPendingGames;
+    }
+
+    // reads every game in a PGN stream and checks that its moves are legal
+    public ImportSummary validate(InputStream in)
+            throws IOException, InterruptedException {
+        AtomicLong valid = new AtomicLong();
+        AtomicLong invalid = new AtomicLong();
+        List<String> errors = new ArrayList<>();
+        Semaphore pending = new Semaphore(maxPendingGames);
+        long games = 0;
+        try (PgnReader reader = new PgnReader(
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16))) {
+            PgnGame game;
+            while ((game = reader.next()) != null) {
+                long number = ++games;
+                PgnGame current = game;
+                pending.acquire();
+                workers.execute(() -> {
+                    try {
+                        current.replay();
+                        valid.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        invalid.incrementAndGet();
+                        synchronized (errors) {
+                            if (errors.size() < MAX_ERRORS) {
+                                errors.add("Game " + number + ": " + e.getMessage());
+                            }
+                        }
+                    } finally {
+                        pending.release();
+                    }
+                });
+            }
+        } finally {
+            // wait for the games already handed to the workers
+            pending.acquire(maxPendingGames);
+        }
+        synchronized (errors) {
+            return new ImportSummary(games, valid.get(), invalid.get(), new ArrayList<>(errors));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+}
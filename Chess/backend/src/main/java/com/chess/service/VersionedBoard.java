@@ -0,0 +1,68 @@
+package com.chess.service;
+
+// a board representation together with the version (position key) it was
+// taken at. The board is left out when the client already has that version
+public final class VersionedBoard<T> {
+    private final String version;
+    private final T board;
+
+    VersionedBoard(String version, T board) {
+        this.version = version;
+        this.board = board;
+    }
+
+    static <T> VersionedBoard<T> notModified(String version) {
+        return new VersionedBoard<>(version, null);
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public T getBoard() {
+        return board;
+    }
+
+    public boolean isNotModified() {
+        return board == null;
+    }
+
+    // checks if an If-None-Match header names a version, comparing weakly as
+    // RFC 9110 asks for If-None-Match. Walks the header in place so a matching
+    // request allocates nothing
+    static boolean matches(String ifNoneMatch, String version) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        int length = ifNoneMatch.length();
+        int i = 0;
+        while (i < length) {
+            char c = ifNoneMatch.charAt(i);
+            if (c == ' ' || c == ',') {
+                i++;
+            } else if (c == '*') {
+                return true;
+            } else {
+                if (ifNoneMatch.startsWith("W/", i)) {
+                    i += 2;
+                }
+                int end = ifNoneMatch.indexOf(',', i);
+                end = end < 0 ? length : end;
+                int start = i;
+                int stop = end;
+                while (stop > start && ifNoneMatch.charAt(stop - 1) == ' ') {
+                    stop--;
+                }
+                if (stop - start >= 2 && ifNoneMatch.charAt(start) == '"' && ifNoneMatch.charAt(stop - 1) == '"') {
+                    start++;
+                    stop--;
+                }
+                if (stop - start == version.length() && ifNoneMatch.regionMatches(start, version, 0, version.length())) {
+                    return true;
+                }
+                i = end;
+            }
+        }
+        return false;
+    }
+}
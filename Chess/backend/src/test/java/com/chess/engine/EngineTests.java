@@ -0,0 +1,86 @@
+package com.chess.engine;
+
+import com.chess.model.BitboardPosition;
+import com.chess.model.Fen;
+import com.chess.model.PackedMove;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EngineTests {
+
+	// a search that keeps to its budget may still be held up by a busy
+	// machine; one that ignores it runs to depth 64, which takes far longer
+	private static final long SLACK_MILLIS = 2000;
+
+	private static SearchResult search(String fen, long millis) {
+		BitboardPosition position = new BitboardPosition();
+		Fen.load(fen, position);
+		return new Engine(64, 16, 0).bestMove(position, new long[] { position.getKey() },
+				TimeUnit.MILLISECONDS.toNanos(millis), 1, new AtomicBoolean());
+	}
+
+	@Test
+	void findsMateInOne() {
+		SearchResult result = search("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1", 1000);
+		assertEquals("a1a8", PackedMove.toUci(result.getMove()));
+		assertTrue(result.isMate());
+	}
+
+	@Test
+	void takesHangingQueen() {
+		SearchResult result = search("rnb1kbnr/pppp1ppp/8/4p3/4P2q/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3", 1000);
+		assertEquals("f3h4", PackedMove.toUci(result.getMove()), result.toString());
+	}
+
+	@Test
+	void keepsToTimeBudget() {
+		long start = System.nanoTime();
+		SearchResult result = search("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 200);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue(result.getMove() != PackedMove.NONE);
+		assertTrue(result.getDepth() < 64, result.toString());
+		assertTrue(elapsed < 200 + SLACK_MILLIS, "took " + elapsed + " ms");
+	}
+
+	@Test
+	void helperThreadsStopWithTheSearch() throws InterruptedException {
+		try (Engine engine = new Engine(64, 16, 3)) {
+			BitboardPosition position = new BitboardPosition();
+			Fen.load("rnb1kbnr/pppp1ppp/8/4p3/4P2q/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3", position);
+			for (int i = 0; i < 3; i++) {
+				long start = System.nanoTime();
+				SearchResult result = engine.bestMove(position, new long[] { position.getKey() },
+						TimeUnit.MILLISECONDS.toNanos(200), 4, new AtomicBoolean());
+				assertEquals("f3h4", PackedMove.toUci(result.getMove()));
+				long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				assertTrue(elapsed < 200 + SLACK_MILLIS, "took " + elapsed + " ms");
+			}
+			// the helpers see the abort flag within a few thousand nodes
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SLACK_MILLIS);
+			while (runningHelpers() > 0 && System.nanoTime() - deadline < 0) {
+				Thread.sleep(10);
+			}
+			assertEquals(0, runningHelpers());
+		}
+	}
+
+	private static long runningHelpers() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().startsWith("engine-helper-")
+						&& thread.getState() == Thread.State.RUNNABLE)
+				.count();
+	}
+
+	@Test
+	void reportsNoMoveWhenMated() {
+		SearchResult result = search("R5k1/5ppp/8/8/8/8/8/6K1 b - - 0 1", 100);
+		assertEquals(PackedMove.NONE, result.getMove());
+		assertEquals(-Search.MATE, result.getScore());
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.chess.engine;
+
+import com.chess.model.BitboardPosition;
+import com.chess.model.Fen;
+import com.chess.model.PackedMove;
+import com.chess.model.PgnGame;
+import com.chess.model.PgnReader;
+import com.chess.model.San;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpeningBookTests {
+
+	private static final String GAMES = """
+			1. e4 e5 2. Nf3 Nc6 3. Bc4 Bc5 4. O-O Nf6 1-0
+
+			1. e4 c5 2. Nf3 d6 0-1
+
+			1. d4 d5 2. c4 e6 1/2-1/2
+			""";
+
+	private static final PolyglotHash HASH = PolyglotHash.withDefaultKeys();
+
+	@TempDir
+	Path directory;
+
+	private OpeningBook buildBook() throws IOException {
+		BookBuilder builder = new BookBuilder(HASH, 20);
+		try (PgnReader reader = new PgnReader(new StringReader(GAMES))) {
+			for (PgnGame game = reader.next(); game != null; game = reader.next()) {
+				builder.add(game);
+			}
+		}
+		Path file = directory.resolve("book.bin");
+		builder.write(file);
+		return OpeningBook.open(file, HASH);
+	}
+
+	private static BitboardPosition play(String... moves) {
+		BitboardPosition position = new BitboardPosition();
+		Fen.load(Fen.START_POSITION, position);
+		for (String move : moves) {
+			position.makeMove(San.parse(position, move));
+		}
+		return position;
+	}
+
+	@Test
+	void writesSortedSixteenByteEntries() throws IOException {
+		OpeningBook book = buildBook();
+		byte[] bytes = Files.readAllBytes(directory.resolve("book.bin"));
+		assertEquals(book.size() * 16, bytes.length);
+		long previous = 0;
+		for (int i = 0; i < book.size(); i++) {
+			long key = ByteBuffer.wrap(bytes, i * 16, 8).getLong();
+			assertTrue(i == 0 || Long.compareUnsigned(previous, key) <= 0);
+			previous = key;
+		}
+	}
+
+	@Test
+	void picksMovesInProportionToTheirWeight() throws IOException {
+		OpeningBook book = buildBook();
+		BitboardPosition start = play();
+		String fen = Fen.write(start, 1);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 3000; i++) {
+			counts.merge(PackedMove.toUci(book.pickMove(start)), 1, Integer::sum);
+		}
+		assertEquals(fen, Fen.write(start, 1));
+		// e4 won once and lost once (2 + 0), d4 drew once (1)
+		assertEquals(2, counts.size(), counts.toString());
+		assertTrue(counts.get("e2e4") > 1800 && counts.get("e2e4") < 2200, counts.toString());
+
+		// black lost after 1... e5, so it is never played from the book
+		BitboardPosition afterE4 = play("e4");
+		for (int i = 0; i < 100; i++) {
+			assertEquals("c7c5", PackedMove.toUci(book.pickMove(afterE4)));
+		}
+	}
+
+	@Test
+	void readsCastlingAsKingTakesRook() throws IOException {
+		BitboardPosition position = play("e4", "e5", "Nf3", "Nc6", "Bc4", "Bc5");
+		int castle = San.parse(position, "O-O");
+		// e1h1: from file 4 rank 0, to file 7 rank 0
+		assertEquals(4 << 6 | 7, BookBuilder.toBookMove(castle));
+		assertEquals(castle, buildBook().pickMove(position));
+	}
+
+	@Test
+	void missesPositionsNotInTheBook() throws IOException {
+		assertEquals(PackedMove.NONE, buildBook().pickMove(play("a4")));
+	}
+
+	@Test
+	void countsEnPassantOnlyWhenACaptureIsPossible() {
+		// after 1. e4 no black pawn can take on e3
+		BitboardPosition noCapture = new BitboardPosition();
+		Fen.load("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", noCapture);
+		BitboardPosition withoutSquare = new BitboardPosition();
+		Fen.load("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", withoutSquare);
+		assertEquals(HASH.key(withoutSquare), HASH.key(noCapture));
+
+		// here the pawn on d4 can
+		BitboardPosition capture = new BitboardPosition();
+		Fen.load("rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", capture);
+		BitboardPosition captureWithoutSquare = new BitboardPosition();
+		Fen.load("rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", captureWithoutSquare);
+		assertNotEquals(HASH.key(captureWithoutSquare), HASH.key(capture));
+	}
+
+	@Test
+	void refusesABookKeyedWithThePublishedTable() throws IOException {
+		// one entry for the start position as other tools key it: 1. e4
+		Path file = directory.resolve("standard.bin");
+		Files.write(file, ByteBuffer.allocate(16).putLong(PolyglotHash.STANDARD_START_KEY)
+				.putShort((short) (4 | 3 << 3 | 4 << 6 | 1 << 9)).putShort((short) 1).putInt(0).array());
+		assertFalse(HASH.isStandard());
+		IOException e = assertThrows(IOException.class, () -> OpeningBook.open(file, HASH));
+		assertTrue(e.getMessage().contains("published"), e.getMessage());
+
+		// a book BookBuilder made opens with the same keys
+		assertTrue(buildBook().size() > 0);
+	}
+
+	@Test
+	void engineAnswersFromTheBookWithoutSearching() throws IOException {
+		try (Engine engine = new Engine(64, 16, 0, buildBook())) {
+			BitboardPosition position = play("e4");
+			SearchResult result = engine.bestMove(position, new long[] { position.getKey() }, 1_000_000_000L, 1,
+					new AtomicBoolean());
+			assertEquals("c7c5", PackedMove.toUci(result.getMove()));
+			assertEquals(0, result.getDepth());
+			assertEquals(0, result.getNodes());
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.chess.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TranspositionTableTests {
+
+	@Test
+	void returnsWhatWasStored() {
+		TranspositionTable table = new TranspositionTable(1);
+		table.store(42L, 1234, -57, 9, TranspositionTable.LOWER, 3);
+		long entry = table.probe(42L);
+		assertEquals(1234, TranspositionTable.move(entry));
+		assertEquals(-57, TranspositionTable.score(entry, 3));
+		assertEquals(9, TranspositionTable.depth(entry));
+		assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+		assertEquals(TranspositionTable.NO_ENTRY, table.probe(43L));
+	}
+
+	@Test
+	void storesMateScoresRelativeToThePosition() {
+		TranspositionTable table = new TranspositionTable(1);
+		// mate in 5 plies from the root, found 3 plies down
+		table.store(7L, 0, Search.MATE - 5, 4, TranspositionTable.EXACT, 3);
+		// reached again 1 ply from the root it is mate in 3 plies
+		assertEquals(Search.MATE - 3, TranspositionTable.score(table.probe(7L), 1));
+	}
+
+	@Test
+	void keepsDeepEntriesUntilTheNextSearch() {
+		// a 1 MB table has 32768 buckets, so these keys share one
+		TranspositionTable table = new TranspositionTable(1);
+		long deep = 1L;
+		long shallow = 1L + 32768;
+		long newer = 1L + 2 * 32768;
+		table.store(deep, 1, 0, 10, TranspositionTable.EXACT, 0);
+		table.store(shallow, 2, 0, 2, TranspositionTable.EXACT, 0);
+		table.store(newer, 3, 0, 1, TranspositionTable.EXACT, 0);
+		// the shallow entries took turns in the second slot
+		assertEquals(10, TranspositionTable.depth(table.probe(deep)));
+		assertEquals(TranspositionTable.NO_ENTRY, table.probe(shallow));
+
+		// once a new search starts, the deep entry may be replaced
+		table.newSearch();
+		table.store(shallow, 2, 0, 2, TranspositionTable.EXACT, 0);
+		assertEquals(TranspositionTable.NO_ENTRY, table.probe(deep));
+		assertEquals(2, TranspositionTable.depth(table.probe(shallow)));
+		assertEquals(1, TranspositionTable.depth(table.probe(newer)));
+	}
+
+	@Test
+	void neverReturnsATornEntry() throws InterruptedException {
+		// a tiny table so writers keep colliding; every stored move is derived
+		// from its key, so a mixed-up entry would show as a wrong move
+		TranspositionTable table = new TranspositionTable(1);
+		AtomicInteger wrong = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			long seed = t;
+			threads[t] = new Thread(() -> {
+				SplittableRandom random = new SplittableRandom(seed);
+				for (int i = 0; i < 2_000_000; i++) {
+					long key = random.nextLong(1 << 16) * 0x9E3779B97F4A7C15L;
+					table.store(key, (int) (key >>> 45), 0, random.nextInt(20), TranspositionTable.EXACT, 0);
+					long other = random.nextLong(1 << 16) * 0x9E3779B97F4A7C15L;
+					long entry = table.probe(other);
+					if (entry != TranspositionTable.NO_ENTRY && TranspositionTable.move(entry) != (int) (other >>> 45)) {
+						wrong.incrementAndGet();
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, wrong.get());
+	}
+
+}
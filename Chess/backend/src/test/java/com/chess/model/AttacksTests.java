@@ -0,0 +1,143 @@
+package com.chess.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AttacksTests {
+
+	private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+	// works out from scratch whether any piece of a colour attacks a square
+	private static boolean attackedByAnyPiece(BitboardPosition position, int square, int byColour) {
+		for (int from = 0; from < 64; from++) {
+			int code = position.pieceAt(from);
+			if (code != BitboardPosition.NO_PIECE && BitboardPosition.colourOf(code) == byColour
+					&& (Attacks.piece(code, from, position.getOccupied()) & (1L << square)) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void assertAttacksMatch(BitboardPosition position) {
+		for (int square = 0; square < 64; square++) {
+			for (int colour = BitboardPosition.WHITE; colour <= BitboardPosition.BLACK; colour++) {
+				assertEquals(attackedByAnyPiece(position, square, colour), position.isAttacked(square, colour));
+			}
+		}
+	}
+
+	@Test
+	void squareAttacksMatchEveryPieceAfterEveryMove() {
+		BitboardPosition root = new BitboardPosition();
+		Fen.load(KIWIPETE, root);
+		assertAttacksMatch(root);
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int count = MoveGenerator.generate(root, moves);
+		BitboardPosition child = new BitboardPosition();
+		for (int i = 0; i < count; i++) {
+			// castles, promotions and en passant all change several squares
+			child.copyFrom(root);
+			child.makeMove(moves[i]);
+			assertAttacksMatch(child);
+		}
+	}
+
+	@Test
+	void squareAttacksMatchEveryPieceThroughALongGame() {
+		BitboardPosition position = new BitboardPosition();
+		Fen.load(KIWIPETE, position);
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		for (int ply = 0; ply < 60; ply++) {
+			int count = MoveGenerator.generate(position, moves);
+			if (count == 0) {
+				break;
+			}
+			position.makeMove(moves[(ply * 7) % count]);
+			assertAttacksMatch(position);
+		}
+	}
+
+	@Test
+	void kingCannotStepBackAlongTheCheckingRay() {
+		// the black rook on a1 checks the white king on e1
+		ChessGame chessGame = ChessGame.fromFen("4k3/8/8/8/8/8/8/r3K3 w - - 0 1");
+		assertEquals(-4, chessGame.makeMove("E8", "F8"));
+		assertEquals(1, chessGame.makeMove("E8", "E7"));
+	}
+
+	// walks each ray a step at a time up to the first blocker
+	private static long walkRays(int square, long occupied, int[][] directions) {
+		long attacks = 0L;
+		for (int[] direction : directions) {
+			int row = BitboardPosition.rowOf(square) + direction[0];
+			int col = BitboardPosition.colOf(square) + direction[1];
+			while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+				long bit = 1L << BitboardPosition.square(row, col);
+				attacks |= bit;
+				if ((occupied & bit) != 0) {
+					break;
+				}
+				row += direction[0];
+				col += direction[1];
+			}
+		}
+		return attacks;
+	}
+
+	@Test
+	void squaresBetweenOnlyLieOnALine() {
+		int a1 = BitboardPosition.square(7, 0);
+		int e3 = BitboardPosition.square(5, 4);
+		int e5 = BitboardPosition.square(3, 4);
+		int a5 = BitboardPosition.square(3, 0);
+		long ends = (1L << a1) | (1L << e5);
+		assertEquals(0L, Attacks.between(a1, e3, (1L << a1) | (1L << e3)));
+		assertEquals((1L << BitboardPosition.square(6, 1)) | (1L << BitboardPosition.square(5, 2))
+				| (1L << BitboardPosition.square(4, 3)), Attacks.between(a1, e5, ends));
+		assertEquals((1L << BitboardPosition.square(6, 0)) | (1L << BitboardPosition.square(5, 0))
+				| (1L << BitboardPosition.square(4, 0)), Attacks.between(a1, a5, (1L << a1) | (1L << a5)));
+		int b2 = BitboardPosition.square(6, 1);
+		assertEquals(0L, Attacks.between(a1, b2, (1L << a1) | (1L << b2)));
+	}
+
+	@Test
+	void magicSliderAttacksMatchWalkingTheRays() {
+		int[][] straight = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+		int[][] diagonal = { { -1, -1 }, { -1, 1 }, { 1, -1 }, { 1, 1 } };
+		SplittableRandom random = new SplittableRandom(1);
+		for (int square = 0; square < 64; square++) {
+			for (int i = 0; i < 500; i++) {
+				// sparse and dense boards both
+				long occupied = i % 2 == 0 ? random.nextLong() & random.nextLong() : random.nextLong();
+				assertEquals(walkRays(square, occupied, straight), Attacks.rook(square, occupied));
+				assertEquals(walkRays(square, occupied, diagonal), Attacks.bishop(square, occupied));
+			}
+		}
+	}
+
+	@Test
+	void leaperTablesCoverEveryMoveOnTheBoard() {
+		int knightMoves = 0;
+		int kingMoves = 0;
+		int whitePawnCaptures = 0;
+		int blackPawnCaptures = 0;
+		for (int square = 0; square < 64; square++) {
+			knightMoves += Long.bitCount(Attacks.knight(square));
+			kingMoves += Long.bitCount(Attacks.king(square));
+			whitePawnCaptures += Long.bitCount(Attacks.pawn(BitboardPosition.WHITE, square));
+			blackPawnCaptures += Long.bitCount(Attacks.pawn(BitboardPosition.BLACK, square));
+		}
+		assertEquals(336, knightMoves);
+		assertEquals(420, kingMoves);
+		assertEquals(98, whitePawnCaptures);
+		assertEquals(98, blackPawnCaptures);
+		// a white pawn on e2 (row 6) attacks d3 and f3 (row 5)
+		assertEquals((1L << BitboardPosition.square(5, 3)) | (1L << BitboardPosition.square(5, 5)),
+				Attacks.pawn(BitboardPosition.WHITE, BitboardPosition.square(6, 4)));
+	}
+
+}
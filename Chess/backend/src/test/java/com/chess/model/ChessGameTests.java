@@ -0,0 +1,198 @@
+package com.chess.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChessGameTests {
+
+	private static final String[] KNIGHT_SHUFFLE = { "G8", "F6", "G1", "F3", "F6", "G8", "F3", "G1" };
+
+	private static Object play(ChessGame chessGame, String... squares) {
+		Object result = null;
+		for (int i = 0; i < squares.length; i += 2) {
+			result = chessGame.makeMove(squares[i], squares[i + 1]);
+		}
+		return result;
+	}
+
+	@Test
+	void threefoldRepetitionEndsTheGame() {
+		ChessGame chessGame = new ChessGame();
+		assertEquals(1, play(chessGame, KNIGHT_SHUFFLE));
+		// the starting position now occurs for the third time
+		assertEquals(9, play(chessGame, KNIGHT_SHUFFLE));
+		assertEquals(-6, chessGame.makeMove("E7", "E5"));
+	}
+
+	@Test
+	void pawnMoveResetsRepetitions() {
+		ChessGame chessGame = new ChessGame();
+		play(chessGame, KNIGHT_SHUFFLE);
+		play(chessGame, "E7", "E5", "E2", "E4");
+		assertEquals(1, play(chessGame, KNIGHT_SHUFFLE));
+	}
+
+	@Test
+	void fiftyMoveRuleCountsPliesSinceCaptureOrPawnMove() {
+		PositionHistory history = new PositionHistory(0L);
+		for (long key = 1; key < 100; key++) {
+			history.add(key, false);
+		}
+		assertEquals(99, history.getHalfmoveClock());
+		history.add(100L, true);
+		assertEquals(0, history.getHalfmoveClock());
+		assertEquals(1, history.add(101L, false));
+		assertEquals(2, history.add(100L, false));
+	}
+
+	@Test
+	void fiftyMoveRuleCountsTheImportedClock() {
+		ChessGame chessGame = ChessGame.fromFen("4k3/8/8/8/8/8/8/R3K3 w - - 99 80");
+		assertEquals(10, play(chessGame, "A8", "A7")); // Ra2
+		assertEquals("1/2-1/2", chessGame.getResult());
+	}
+
+	@Test
+	void snapshotRestoresPositionAndRepetitions() {
+		ChessGame chessGame = new ChessGame();
+		play(chessGame, KNIGHT_SHUFFLE);
+		ChessGame restored = ChessGame.fromSnapshot(chessGame.toSnapshot());
+		assertArrayEquals(chessGame.getBoard(), restored.getBoard());
+		assertEquals(chessGame.getPositionKey(), restored.getPositionKey());
+		assertEquals(9, play(restored, KNIGHT_SHUFFLE));
+	}
+
+	@Test
+	void legalMovesAreCachedUntilAMoveIsMade() {
+		ChessGame chessGame = new ChessGame();
+		List<LegalMove> moves = chessGame.getLegalMoves();
+		assertEquals(20, moves.size());
+		assertSame(moves, chessGame.getLegalMoves());
+		assertEquals(List.of("E6", "E5"), chessGame.getLegalMoves("E7").stream().map(LegalMove::getTo).toList());
+
+		// a rejected move keeps the position and its moves
+		chessGame.makeMove("E7", "E4");
+		assertSame(moves, chessGame.getLegalMoves());
+		chessGame.makeMove("E7", "E5");
+		assertNotSame(moves, chessGame.getLegalMoves());
+		assertEquals(20, chessGame.getLegalMoves().size());
+		assertTrue(chessGame.getLegalMoves("E7").isEmpty());
+	}
+
+	@Test
+	void everyLegalMoveIsAccepted() {
+		String[] fens = { "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+				"1n2k3/P7/8/8/8/8/8/4K3 w - - 0 1", "4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1" };
+		int[] counts = { 48, 13, 7 };
+		for (int i = 0; i < fens.length; i++) {
+			List<LegalMove> moves = ChessGame.fromFen(fens[i]).getLegalMoves();
+			assertEquals(counts[i], moves.size(), fens[i]);
+			for (LegalMove move : moves) {
+				Object result = ChessGame.fromFen(fens[i]).makeMove(move.getFrom(), move.getTo());
+				assertTrue(result instanceof Integer code && code > 0, move.getUci() + " in " + fens[i] + ": " + result);
+			}
+		}
+	}
+
+	@Test
+	void noLegalMovesOnceTheGameIsOver() {
+		ChessGame chessGame = new ChessGame();
+		play(chessGame, KNIGHT_SHUFFLE);
+		play(chessGame, KNIGHT_SHUFFLE);
+		assertTrue(chessGame.getLegalMoves().isEmpty());
+	}
+
+	private static Object playSan(ChessGame chessGame, String san) {
+		return chessGame.makeMove(San.parse(chessGame.copyPosition(), san));
+	}
+
+	@Test
+	void foolsMateIsCheckmate() {
+		ChessGame chessGame = new ChessGame();
+		for (String san : new String[] { "f3", "e5", "g4" }) {
+			assertEquals(1, playSan(chessGame, san));
+		}
+		assertEquals(3, playSan(chessGame, "Qh4#"));
+		assertEquals("0-1", chessGame.getResult());
+		assertTrue(chessGame.getLegalMoves().isEmpty());
+	}
+
+	@Test
+	void stalemateEndsTheGame() {
+		ChessGame chessGame = ChessGame.fromFen("7k/8/4Q1K1/8/8/8/8/8 w - - 0 1");
+		assertEquals(8, playSan(chessGame, "Qf7"));
+		assertEquals("1/2-1/2", chessGame.getResult());
+	}
+
+	@Test
+	void onlyMovesOutOfCheckAreAccepted() {
+		// the rook on a1 checks the king along the first rank
+		ChessGame chessGame = ChessGame.fromFen("4k3/P7/8/8/8/8/8/r3K3 w - - 0 1");
+		assertEquals(List.of("e1d2", "e1e2", "e1f2"),
+				chessGame.getLegalMoves().stream().map(LegalMove::getUci).sorted().toList());
+		// a promotion that ignores the check is refused, and the king is
+		// still in check afterwards
+		assertEquals(-4, chessGame.makeMove("A2", "A6")); // a8=Q
+		assertEquals(-4, chessGame.makeMove("E8", "D8")); // Kd1
+		assertEquals(1, playSan(chessGame, "Ke2"));
+	}
+
+	@Test
+	void unknownMovesGetTheRejectionCodes() {
+		ChessGame chessGame = new ChessGame();
+		assertEquals(-3, chessGame.makeMove("E5", "E4")); // nothing on e4
+		assertEquals(-2, chessGame.makeMove("E2", "E4")); // black's pawn
+		assertEquals(-3, chessGame.makeMove("E7", "E9"));
+		assertEquals(-3, chessGame.makeMove("Z7", "E5"));
+		assertEquals(-3, chessGame.makeMove("E7", "E4")); // three steps
+		assertEquals(new ChessGame().toFen(), chessGame.toFen());
+	}
+
+	@Test
+	void castlingThroughAnAttackedSquareIsRefused() {
+		// the rook on f8 covers f1, which the king would cross
+		ChessGame chessGame = ChessGame.fromFen("4kr2/8/8/8/8/8/8/4K2R w K - 0 1");
+		assertEquals(-3, chessGame.makeMove("E8", "H8"));
+		assertEquals("W|K", chessGame.getBoard()[7][4]);
+		assertEquals(6, ChessGame.fromFen("4k3/8/8/8/8/8/8/4K2R w K - 0 1").makeMove("E8", "H8"));
+	}
+
+	@Test
+	void promotionCanAnswerCheck() {
+		ChessGame chessGame = ChessGame.fromFen("r6K/1P6/8/8/8/8/8/4k3 w - - 0 1");
+		assertEquals(1, playSan(chessGame, "bxa8=Q"));
+		assertEquals("W|Q", chessGame.getBoard()[0][0]);
+	}
+
+	@Test
+	void pawnReachingTheLastRowPromotes() {
+		// in check, the move is looked up in the legal moves
+		ChessGame inCheck = ChessGame.fromFen("r6K/1P6/8/8/8/8/8/4k3 w - - 0 1");
+		assertEquals(1, inCheck.makeMove("B2", "A1")); // bxa8
+		assertEquals("W|Q", inCheck.getBoard()[0][0]);
+		assertEquals(List.of("bxa8=Q"), inCheck.toPgn().getMoves());
+		// out of check, it is checked against the pawn's possible moves
+		ChessGame quiet = ChessGame.fromFen("7K/1P6/8/8/8/8/8/4k3 w - - 0 1");
+		assertEquals(1, quiet.makeMove("B2", "B1")); // b8
+		assertEquals("W|Q", quiet.getBoard()[0][1]);
+		assertEquals(List.of("b8=Q"), quiet.toPgn().getMoves());
+	}
+
+	@Test
+	void pinnedPiecesStayOnTheirLine() {
+		// the bishop on d2 is pinned by the bishop on a5, the knight on e2 by
+		// the rook on e8
+		ChessGame chessGame = ChessGame.fromFen("4r2k/8/8/b7/8/8/3BN3/4K3 w - - 0 1");
+		assertEquals(List.of("d2a5", "d2b4", "d2c3"),
+				chessGame.getLegalMoves("D7").stream().map(LegalMove::getUci).sorted().toList());
+		assertTrue(chessGame.getLegalMoves("E7").isEmpty());
+	}
+
+}
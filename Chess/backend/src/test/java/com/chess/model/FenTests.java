@@ -0,0 +1,80 @@
+package com.chess.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FenTests {
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 12 40",
+			"r3k3/8/8/8/8/8/8/4K2R b Kq - 3 22" })
+	void writesBackWhatItLoads(String fen) {
+		BitboardPosition position = new BitboardPosition();
+		Fen.load(fen, position);
+		int fullmoveNumber = Integer.parseInt(fen.substring(fen.lastIndexOf(' ') + 1));
+		assertEquals(fen, Fen.write(position, fullmoveNumber));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"8/8/8/8/8/8/8/4K3 w - - 0 1", // no black king
+			"4k3/8/8/8/8/8/8/3KK3 w - - 0 1", // two white kings
+			"P3k3/8/8/8/8/8/8/4K3 w - - 0 1", // a pawn on the back row
+			"4k3/8/8/8/8/8/8/4R1K1 w - - 0 1", // black is in check with white to move
+			"4k3/8/8/8/8/8/8/4K3 w - - -1 1",
+			"4k3/8/8/8/8/8/8/4K3 w - - 0 0" })
+	void refusesPositionsNoGameReaches(String fen) {
+		assertThrows(IllegalArgumentException.class, () -> Fen.load(fen, new BitboardPosition()));
+	}
+
+	@Test
+	void dropsCastlingRightsWithoutTheirKingAndRook() {
+		BitboardPosition position = new BitboardPosition();
+		Fen.load("r3k3/8/8/8/8/8/8/4K1R1 w KQkq - 0 1", position);
+		assertEquals("r3k3/8/8/8/8/8/8/4K1R1 w q - 0 1", Fen.write(position, 1));
+
+		// castling with a right the FEN claimed but has no rook for is refused
+		ChessGame chessGame = ChessGame.fromFen("4k3/8/8/8/8/8/8/4K3 w K - 0 1");
+		assertEquals(-3, chessGame.makeMove("E8", "H8"));
+		assertEquals("4k3/8/8/8/8/8/8/4K3 w - - 0 1", chessGame.toFen());
+	}
+
+	@Test
+	void dropsAnEnPassantSquareNoPawnSkipped() {
+		BitboardPosition position = new BitboardPosition();
+		Fen.load("4k3/8/8/8/8/8/8/4K3 w - e6 0 1", position);
+		assertEquals(BitboardPosition.NO_SQUARE, position.getEnPassantSquare());
+	}
+
+	@Test
+	void gameNumbersMovesOnFromItsStartPosition() {
+		ChessGame chessGame = ChessGame.fromFen("4k3/8/8/8/8/8/8/4K2R b K - 10 40");
+		assertEquals("4k3/8/8/8/8/8/8/4K2R b K - 10 40", chessGame.toFen());
+		chessGame.makeMove("E1", "D1"); // Kd8
+		assertEquals("3k4/8/8/8/8/8/8/4K2R w K - 11 41", chessGame.toFen());
+		chessGame.makeMove("H8", "H7"); // Rh2
+		assertEquals("3k4/8/8/8/8/8/7R/4K3 b - - 12 41", chessGame.toFen());
+
+		ChessGame restored = ChessGame.fromSnapshot(chessGame.toSnapshot());
+		assertEquals(chessGame.toFen(), restored.toFen());
+		assertEquals(chessGame.toFen(), ChessGame.fromFen(chessGame.toFen()).toFen());
+	}
+
+	@Test
+	void gameWritesItsCurrentPosition() {
+		ChessGame chessGame = new ChessGame();
+		chessGame.makeMove("E7", "E5");
+		chessGame.makeMove("C2", "C4");
+		chessGame.makeMove("G8", "F6");
+		assertEquals("rnbqkbnr/pp1ppppp/8/2p5/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq - 1 2", chessGame.toFen());
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.chess.model;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// reference node counts from https://www.chessprogramming.org/Perft_Results
+class PerftTests {
+
+	@ParameterizedTest(name = "{0} depth {1}")
+	@CsvSource(delimiter = ';', value = {
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1; 1; 20",
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1; 2; 400",
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1; 3; 8902",
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1; 4; 197281",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1; 1; 48",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1; 2; 2039",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1; 3; 97862",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1; 4; 4085603",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1; 1; 14",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1; 2; 191",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1; 3; 2812",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1; 4; 43238",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1; 5; 674624",
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1; 1; 6",
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1; 2; 264",
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1; 3; 9467",
+			"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8; 1; 44",
+			"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8; 2; 1486",
+			"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8; 3; 62379",
+			"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10; 1; 46",
+			"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10; 2; 2079",
+			"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10; 3; 89890",
+	})
+	void matchesReferenceNodeCounts(String fen, int depth, long expectedNodes) {
+		BitboardPosition position = new BitboardPosition();
+		Fen.load(fen, position);
+		assertEquals(expectedNodes, new Perft(depth).perft(position, depth));
+	}
+
+	// walks the same tree through ChessGame, so the game's own move checks are
+	// held to the generator: every generated move must be accepted, and every
+	// other pair of squares refused
+	@ParameterizedTest(name = "{0}")
+	@CsvSource(delimiter = ';', value = {
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1; 400",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1; 2039",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1; 191",
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1; 264",
+			"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8; 1486",
+			"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10; 2079",
+	})
+	void gameAcceptsExactlyTheGeneratedMoves(String fen, long expectedNodes) {
+		assertEquals(expectedNodes, gamePerft(ChessGame.fromFen(fen), 2));
+	}
+
+	private static long gamePerft(ChessGame chessGame, int depth) {
+		if (depth == 0) {
+			return 1;
+		}
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int count = MoveGenerator.generateLegal(chessGame.copyPosition(), moves);
+		byte[] snapshot = chessGame.toSnapshot();
+		Set<String> accepted = new HashSet<>();
+		long nodes = 0;
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			ChessGame child = ChessGame.fromSnapshot(snapshot);
+			Object result = child.makeMove(move);
+			assertTrue(result instanceof Integer && (Integer) result > 0, PackedMove.toUci(move) + ": " + result);
+			nodes += gamePerft(child, depth - 1);
+			accepted.add(ChessGame.sourceName(move) + ChessGame.destinationName(move));
+			if (PackedMove.isPromotion(move) && PackedMove.promotion(move) == BitboardPosition.QUEEN) {
+				// a queen promotion may also be given as a plain move
+				accepted.add(ChessGame.sourceName(move) + squareName(PackedMove.to(move)));
+			}
+		}
+
+		long key = chessGame.getPositionKey();
+		for (int from = 0; from < 64; from++) {
+			for (int to = 0; to < 64; to++) {
+				if (!accepted.contains(squareName(from) + squareName(to))) {
+					Object result = chessGame.makeMove(squareName(from), squareName(to));
+					assertInstanceOf(Integer.class, result);
+					assertTrue((Integer) result < 0, squareName(from) + squareName(to) + ": " + result);
+				}
+			}
+		}
+		assertEquals(key, chessGame.getPositionKey());
+		return nodes;
+	}
+
+	// names a square the way ChessGame.makeMove(String, String) reads it
+	private static String squareName(int square) {
+		return "" + (char) ('A' + BitboardPosition.colOf(square)) + (char) ('1' + BitboardPosition.rowOf(square));
+	}
+
+}
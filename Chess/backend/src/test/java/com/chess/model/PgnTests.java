@@ -0,0 +1,86 @@
+package com.chess.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PgnTests {
+
+	private static final String SCHOLARS_MATE = """
+			[Event "Casual game"]
+			[White "A"]
+			[Black "B"]
+			[Result "1-0"]
+
+			1. e4 {the usual} e5 2. Bc4 $1 (2. Nf3 Nc6) Nc6 ; a comment to the end of the line
+			3. Qh5!? Nf6?? 4. Qxf7# 1-0
+
+			[Event "Second"]
+
+			1. d4 d5 *
+			""";
+
+	@Test
+	void readsMainLineOfEachGame() throws IOException {
+		try (PgnReader reader = new PgnReader(new StringReader(SCHOLARS_MATE))) {
+			PgnGame first = reader.next();
+			assertEquals("Casual game", first.getTag("Event"));
+			assertEquals(List.of("e4", "e5", "Bc4", "Nc6", "Qh5", "Nf6", "Qxf7#"), first.getMoves());
+			assertEquals("1-0", first.getResult());
+
+			PgnGame second = reader.next();
+			assertEquals("Second", second.getTag("Event"));
+			assertEquals(List.of("d4", "d5"), second.getMoves());
+			assertEquals("*", second.getResult());
+
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	void writesDisambiguationAndPromotion() {
+		BitboardPosition position = new BitboardPosition();
+		Fen.load("k7/4P3/8/8/8/8/8/KN3N2 w - - 0 1", position);
+		int knightMove = San.parse(position, "Nbd2");
+		assertEquals("Nbd2", San.write(position, knightMove));
+		int promotion = San.parse(position, "e8=Q");
+		assertEquals("e8=Q+", San.write(position, promotion));
+		assertThrows(IllegalArgumentException.class, () -> San.parse(position, "Nd2"));
+	}
+
+	@Test
+	void exportedGameImportsToTheSamePosition() throws IOException {
+		PgnGame pgnGame;
+		try (PgnReader reader = new PgnReader(new StringReader(SCHOLARS_MATE))) {
+			pgnGame = reader.next();
+		}
+		ChessGame chessGame = ChessGame.fromPgn(pgnGame);
+		assertEquals("1-0", chessGame.getResult());
+
+		StringWriter exported = new StringWriter();
+		new PgnWriter(exported).write(chessGame.toPgn());
+		PgnGame reread;
+		try (PgnReader reader = new PgnReader(new StringReader(exported.toString()))) {
+			reread = reader.next();
+		}
+		assertEquals(pgnGame.getMoves(), reread.getMoves());
+		assertEquals(chessGame.toFen(), ChessGame.fromPgn(reread).toFen());
+	}
+
+	@Test
+	void rejectsIllegalMoveByNumber() {
+		PgnGame pgnGame = new PgnGame();
+		pgnGame.addMove("e4");
+		pgnGame.addMove("e4");
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, pgnGame::replay);
+		assertEquals("Move 2: Illegal move: e4", e.getMessage());
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.chess.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UndoStackTests {
+
+	private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+	private static void assertSamePosition(BitboardPosition expected, BitboardPosition actual) {
+		byte[] expectedSquares = new byte[32];
+		byte[] actualSquares = new byte[32];
+		expected.packSquares(expectedSquares, 0);
+		actual.packSquares(actualSquares, 0);
+		assertArrayEquals(expectedSquares, actualSquares);
+		assertEquals(expected.getSideToMove(), actual.getSideToMove());
+		assertEquals(expected.getCastlingRights(), actual.getCastlingRights());
+		assertEquals(expected.getEnPassantSquare(), actual.getEnPassantSquare());
+		assertEquals(expected.getHalfmoveClock(), actual.getHalfmoveClock());
+		assertEquals(expected.getKey(), actual.getKey());
+		assertEquals(actual.computeKey(), actual.getKey());
+	}
+
+	// makes and unmakes every move sequence to a depth, checking the position
+	// comes back exactly after each one
+	private static void walk(BitboardPosition position, int depth, int[][] moves) {
+		if (depth == 0) {
+			return;
+		}
+		BitboardPosition before = new BitboardPosition();
+		before.copyFrom(position);
+		int count = MoveGenerator.generate(position, moves[depth]);
+		for (int i = 0; i < count; i++) {
+			position.makeMove(moves[depth][i]);
+			walk(position, depth - 1, moves);
+			position.unmakeMove();
+			assertSamePosition(before, position);
+		}
+	}
+
+	@Test
+	void unmakeRestoresEveryMoveKind() {
+		// Kiwipete has castles, en passant, promotions and captures within three plies
+		BitboardPosition position = new BitboardPosition();
+		Fen.load(KIWIPETE, position);
+		walk(position, 3, new int[4][MoveGenerator.MAX_MOVES]);
+		assertEquals(0, position.getUndoDepth());
+	}
+
+	@Test
+	void boardTakesBackAnyNumberOfMoves() {
+		Board board = new Board();
+		board.initialize();
+		BitboardPosition start = new BitboardPosition();
+		start.copyFrom(board.getPosition());
+
+		// shuffle the knights for longer than the undo stack starts out
+		for (int i = 0; i < 100; i++) {
+			board.makeMove(new Move(new Position(7, 6), new Position(5, 5)));
+			board.makeMove(new Move(new Position(0, 6), new Position(2, 5)));
+			board.makeMove(new Move(new Position(5, 5), new Position(7, 6)));
+			board.makeMove(new Move(new Position(2, 5), new Position(0, 6)));
+		}
+		assertEquals(400, board.getPosition().getHalfmoveClock());
+		for (int i = 0; i < 400; i++) {
+			board.undoMove();
+		}
+		assertSamePosition(start, board.getPosition());
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.chess.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ZobristTests {
+
+	private static void assertKeyUpToDate(Board board) {
+		BitboardPosition position = board.getPosition();
+		assertEquals(position.computeKey(), position.getKey());
+	}
+
+	private static Move move(int fromRow, int fromCol, int toRow, int toCol) {
+		return new Move(new Position(fromRow, fromCol), new Position(toRow, toCol));
+	}
+
+	@Test
+	void incrementalKeyMatchesFullKeyThroughMakeAndUndo() {
+		Board board = new Board();
+		board.initialize();
+		long startKey = board.getPosition().getKey();
+		assertKeyUpToDate(board);
+
+		board.makeMove(move(6, 4, 4, 4));
+		assertKeyUpToDate(board);
+		board.undoMove();
+		assertKeyUpToDate(board);
+		assertEquals(startKey, board.getPosition().getKey());
+
+		// clear the white kingside, give up castling queenside by moving the
+		// rook, and castle
+		board.makeMove(move(7, 5, 4, 2));
+		board.makeMove(move(7, 6, 5, 5));
+		board.makeMove(move(7, 1, 5, 2));
+		board.makeMove(move(7, 0, 7, 1));
+		assertKeyUpToDate(board);
+		assertEquals(0, board.getPosition().getCastlingRights() & BitboardPosition.WHITE_QUEENSIDE);
+		board.getPosition().makeMove(PackedMove.encode(BitboardPosition.square(7, 4),
+				BitboardPosition.square(7, 6), PackedMove.KING_CASTLE));
+		assertKeyUpToDate(board);
+		board.undoMove();
+		assertKeyUpToDate(board);
+
+		// black pawn walks down and promotes on white's back row
+		board.makeMove(move(1, 0, 3, 0));
+		assertKeyUpToDate(board);
+		board.pawnPromotion(move(1, 1, 7, 1), new Queen(Colour.BLACK));
+		assertKeyUpToDate(board);
+		board.undoMove();
+		assertKeyUpToDate(board);
+	}
+
+	@Test
+	void transposedMoveOrdersGiveTheSameKey() {
+		ChessGame first = new ChessGame();
+		first.makeMove("G8", "F6");
+		first.makeMove("G1", "F3");
+		first.makeMove("B8", "C6");
+		first.makeMove("B1", "C3");
+
+		ChessGame second = new ChessGame();
+		second.makeMove("B8", "C6");
+		second.makeMove("B1", "C3");
+		second.makeMove("G8", "F6");
+		second.makeMove("G1", "F3");
+
+		assertEquals(first.getPositionKey(), second.getPositionKey());
+		assertNotEquals(new ChessGame().getPositionKey(), first.getPositionKey());
+	}
+
+	@Test
+	void enPassantSquareIsPartOfTheKey() {
+		Board pushed = new Board();
+		pushed.initialize();
+		pushed.makeMove(move(6, 4, 4, 4));
+
+		Board stepped = new Board();
+		stepped.initialize();
+		stepped.makeMove(move(6, 4, 5, 4));
+		stepped.makeMove(move(5, 4, 4, 4));
+
+		// same pieces and side to move, but only the two step push can be taken en
+		// passant
+		assertNotEquals(pushed.getPosition().getKey(), stepped.getPosition().getKey());
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.chess.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EngineServiceTests {
+
+	// one worker and room for one waiting job
+	private final EngineService engineService = new EngineService(Duration.ofMillis(100), Duration.ofSeconds(1),
+			64, 1, 1, 0, 1, 1, Duration.ofMillis(200), "", "");
+
+	@AfterEach
+	void shutdown() {
+		engineService.shutdown();
+	}
+
+	// work that runs until it is cancelled
+	private static String waitForCancel(AtomicBoolean cancelled, CountDownLatch started) {
+		started.countDown();
+		while (!cancelled.get()) {
+			Thread.onSpinWait();
+		}
+		return "cancelled";
+	}
+
+	@Test
+	void rejectsWorkWhenQueueIsFull() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		EngineJob<String> running = engineService.submit("a", Duration.ZERO, c -> waitForCancel(c, started));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		EngineJob<String> queued = engineService.submit("b", Duration.ZERO, c -> "done");
+		assertThrows(RejectedExecutionException.class,
+				() -> engineService.submit("c", Duration.ZERO, c -> "never"));
+
+		engineService.cancel("a");
+		assertThrows(CancellationException.class, running::join);
+		assertEquals("done", queued.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void dropsJobsThatWaitedTooLong() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean ran = new AtomicBoolean();
+		engineService.submit("a", Duration.ZERO, c -> waitForCancel(c, started));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		EngineJob<String> late = engineService.submit("b", Duration.ZERO, c -> {
+			ran.set(true);
+			return "too late";
+		});
+		Thread.sleep(300);
+		engineService.cancel("a");
+		ExecutionException e = assertThrows(ExecutionException.class, () -> late.get(10, TimeUnit.SECONDS));
+		assertInstanceOf(TimeoutException.class, e.getCause());
+		assertFalse(ran.get());
+	}
+
+	@Test
+	void failsAJobWhoseWorkThrowsAnError() throws Exception {
+		EngineJob<String> failed = engineService.submit("a", Duration.ZERO, c -> {
+			throw new StackOverflowError();
+		});
+		ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+		assertInstanceOf(StackOverflowError.class, e.getCause());
+		// the worker is still there for the next job
+		assertEquals("done", engineService.submit("a", Duration.ZERO, c -> "done").get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void keepsSearchThreadsUnderTheCoreCap() {
+		for (int processors : new int[] { 2, 3, 4, 8, 16, 64 }) {
+			int cap = processors - 1;
+			int defaultWorkers = EngineService.workerCount(processors, 0);
+			assertTrue(defaultWorkers >= 1);
+			assertTrue(defaultWorkers + EngineService.helperCount(processors, defaultWorkers, 0) <= cap);
+
+			// configured counts are cut back to fit as well
+			int workers = EngineService.workerCount(processors, 1000);
+			assertTrue(workers + EngineService.helperCount(processors, workers, 1000) <= cap);
+			assertTrue(1 + EngineService.helperCount(processors, 1, 1000) <= cap);
+		}
+		// a single processor still gets one search at a time
+		assertEquals(1, EngineService.workerCount(1, 0));
+		assertEquals(0, EngineService.helperCount(1, 1, 0));
+
+		EngineService defaults = new EngineService(Duration.ofMillis(100), Duration.ofSeconds(1), 64, 1, 0, 0, 0, 1,
+				Duration.ofMillis(200), "", "");
+		try {
+			int processors = Runtime.getRuntime().availableProcessors();
+			assertTrue(defaults.maxSearchThreads() <= Math.max(1, processors - 1));
+		} finally {
+			defaults.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.chess.service;
+
+import com.chess.model.MoveEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class GameEventsTests {
+
+	// keeps the moves it is sent
+	private static final class RecordingEmitter extends SseEmitter {
+		private final List<String> moves = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			for (var part : builder.build()) {
+				if (part.getData() instanceof MoveEvent event) {
+					moves.add(event.getFrom() + event.getTo());
+				}
+			}
+		}
+	}
+
+	// a client that has stopped reading: every send blocks until released
+	private static final class StalledEmitter extends SseEmitter {
+		private final CountDownLatch released = new CountDownLatch(1);
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Test
+	void dropsAStalledClientWithoutHoldingUpTheGame() {
+		GameEvents gameEvents = new GameEvents(Duration.ofMinutes(1), 4);
+		StalledEmitter stalled = new StalledEmitter();
+		RecordingEmitter reader = new RecordingEmitter();
+		gameEvents.subscribe("game", stalled);
+		gameEvents.subscribe("game", reader);
+
+		// moves come at the pace of a game: the reader takes each one before
+		// the next is made, while the stalled client never takes any
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+			for (int i = 0; i < 10; i++) {
+				gameEvents.publishMove("game", "A" + i, "B" + i, 1, i);
+				while (reader.moves.size() <= i) {
+					Thread.sleep(1);
+				}
+			}
+		});
+		assertEquals(1, gameEvents.subscriberCount("game"));
+		for (int i = 0; i < 10; i++) {
+			assertEquals("A" + i + "B" + i, reader.moves.get(i));
+		}
+		stalled.released.countDown();
+	}
+
+	@Test
+	void closesEveryStreamOfAnEndedGame() {
+		GameEvents gameEvents = new GameEvents(Duration.ofMinutes(1), 4);
+		gameEvents.subscribe("game", new RecordingEmitter());
+		gameEvents.subscribe("game", new RecordingEmitter());
+		assertEquals(2, gameEvents.subscriberCount("game"));
+		gameEvents.close("game");
+		assertEquals(0, gameEvents.subscriberCount("game"));
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.chess.service;
+
+import com.chess.model.ChessGame;
+import com.chess.model.PgnWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameJournalTests {
+
+	private static final String[][] MOVES = {
+			{ "E7", "E5" }, { "E2", "E4" }, { "G8", "F6" }, { "B1", "C3" }, { "F8", "C5" },
+			{ "G1", "F3" }, { "D7", "D6" }, { "D2", "D3" }, { "C8", "G4" } };
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void recoversFromSnapshotAndLogTail() throws IOException {
+		GameJournal journal = new GameJournal(directory.toString(), 4);
+		ChessGame chessGame = new ChessGame();
+		journal.create("game", chessGame);
+		for (String[] move : MOVES) {
+			assertTrue((Integer) chessGame.makeMove(move[0], move[1]) > 0);
+			journal.recordMove("game", chessGame, move[0], move[1]);
+		}
+		journal.shutdown();
+
+		// a record cut short by a crash is dropped
+		Files.write(directory.resolve("game.log"), new byte[] { 1 }, StandardOpenOption.APPEND);
+
+		GameJournal restarted = new GameJournal(directory.toString(), 4);
+		assertEquals(List.of("game"), restarted.gameIds());
+		assertEquals(chessGame.toFen(), restarted.recover("game").toFen());
+		assertEquals(MOVES.length * 2, Files.size(directory.resolve("game.log")));
+		restarted.shutdown();
+	}
+
+	@Test
+	void replaysRestarts() {
+		GameJournal journal = new GameJournal(directory.toString(), 64);
+		ChessGame chessGame = new ChessGame();
+		journal.create("game", chessGame);
+		chessGame.makeMove("E7", "E5");
+		journal.recordMove("game", chessGame, "E7", "E5");
+		chessGame = new ChessGame();
+		journal.recordRestart("game", chessGame);
+		chessGame.makeMove("D7", "D5");
+		journal.recordMove("game", chessGame, "D7", "D5");
+		journal.shutdown();
+
+		GameJournal restarted = new GameJournal(directory.toString(), 64);
+		assertEquals(chessGame.toFen(), restarted.recover("game").toFen());
+		restarted.delete("game");
+		assertTrue(restarted.gameIds().isEmpty());
+	}
+
+	@Test
+	void recoversTheWholeHistory() throws IOException {
+		GameJournal journal = new GameJournal(directory.toString(), 4);
+		ChessGame chessGame = ChessGame.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 3 7");
+		journal.create("game", chessGame);
+		for (String[] move : MOVES) {
+			assertTrue((Integer) chessGame.makeMove(move[0], move[1]) > 0);
+			journal.recordMove("game", chessGame, move[0], move[1]);
+		}
+		journal.shutdown();
+
+		// the snapshot taken after move 8 is replayed along with the log
+		GameJournal restarted = new GameJournal(directory.toString(), 4);
+		ChessGame recovered = restarted.recover("game");
+		assertEquals(pgn(chessGame), pgn(recovered));
+		assertEquals(MOVES.length, recovered.toPgn().getMoves().size());
+		assertEquals(chessGame.toFen(), recovered.toFen());
+		restarted.shutdown();
+	}
+
+	private static String pgn(ChessGame chessGame) throws IOException {
+		StringWriter out = new StringWriter();
+		new PgnWriter(out).write(chessGame.toPgn());
+		return out.toString();
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.chess.service;
+
+import com.chess.model.ChessGame;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameSessionTests {
+
+	@Test
+	void runsOneMessageAtATimeInOrder() throws InterruptedException {
+		GameSession session = new GameSession("game", new ChessGame());
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger overlaps = new AtomicInteger();
+		int[] count = new int[1]; // only touched by messages
+		List<List<Integer>> seen = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			seen.add(new ArrayList<>());
+		}
+
+		// four threads each send a thousand numbered messages
+		List<Thread> senders = new ArrayList<>();
+		for (int sender = 0; sender < 4; sender++) {
+			int id = sender;
+			senders.add(Thread.ofPlatform().start(() -> {
+				for (int i = 0; i < 1000; i++) {
+					int index = i;
+					session.ask(s -> {
+						if (running.incrementAndGet() > 1) {
+							overlaps.incrementAndGet();
+						}
+						seen.get(id).add(index);
+						count[0]++;
+						running.decrementAndGet();
+						return null;
+					});
+				}
+			}));
+		}
+		for (Thread sender : senders) {
+			sender.join();
+		}
+
+		// this runs after every message sent before it
+		assertEquals(4000, (int) session.ask(s -> count[0]).join());
+		assertEquals(0, overlaps.get());
+		for (List<Integer> indices : seen) {
+			assertEquals(1000, indices.size());
+			for (int i = 0; i < indices.size(); i++) {
+				assertEquals(i, indices.get(i));
+			}
+		}
+	}
+
+	@Test
+	void runsDifferentGamesInParallel() {
+		GameSession first = new GameSession("first", new ChessGame());
+		GameSession second = new GameSession("second", new ChessGame());
+		CountDownLatch released = new CountDownLatch(1);
+
+		// the first game waits for the second to run, which it could not if
+		// every game shared one thread
+		CompletableFuture<Boolean> waiting = first.ask(s -> {
+			try {
+				return released.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		});
+		second.ask(s -> {
+			released.countDown();
+			return null;
+		}).join();
+		assertTrue(waiting.join());
+	}
+
+	@Test
+	void passesOnWhatAMessageThrows() {
+		GameSession session = new GameSession("game", new ChessGame());
+		CompletionException e = assertThrows(CompletionException.class, () -> session.ask(s -> {
+			throw new IllegalStateException("broken");
+		}).join());
+		assertTrue(e.getCause() instanceof IllegalStateException);
+
+		// the game carries on with its next message
+		assertEquals("game", session.ask(GameSession::getId).join());
+	}
+
+	@Test
+	void answersMessagesSentAfterEvictionWithEvicted() {
+		GameSession session = new GameSession("game", new ChessGame());
+		session.ask(s -> {
+			s.markEvicted();
+			return null;
+		}).join();
+		CompletionException e = assertThrows(CompletionException.class,
+				() -> session.ask(GameSession::getChessGame).join());
+		assertTrue(GameSession.wasEvicted(e.getCause()));
+	}
+
+}
@@ -0,0 +1,143 @@
+package com.chess.service;
+
+import com.chess.model.ChessGame;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameStoreTests {
+
+	@TempDir
+	Path directory;
+
+	private static GameStore store(int maxGames, Duration idleTimeout, String spillDirectory) {
+		return new GameStore(maxGames, idleTimeout, spillDirectory, new GameJournal("", 64));
+	}
+
+	private static String fen(GameStore gameStore, String gameId) {
+		return gameStore.call(gameId, session -> session.getChessGame().toFen());
+	}
+
+	@Test
+	void keepsGamesApart() {
+		GameStore gameStore = store(10, Duration.ofMinutes(30), "");
+		gameStore.add("first", new ChessGame());
+		gameStore.add("second", new ChessGame());
+		gameStore.call("first", session -> session.getChessGame().makeMove("E7", "E5"));
+
+		assertEquals(new ChessGame().toFen(), fen(gameStore, "second"));
+		assertFalse(fen(gameStore, "first").equals(fen(gameStore, "second")));
+		assertTrue(gameStore.remove("first"));
+		assertNull(gameStore.find("first"));
+		assertFalse(gameStore.remove("first"));
+		assertEquals(1, gameStore.size());
+	}
+
+	@Test
+	void evictsTheLeastRecentlyUsedGameWhenFull() {
+		GameStore gameStore = store(2, Duration.ofMinutes(30), "");
+		gameStore.add("first", new ChessGame());
+		gameStore.add("second", new ChessGame());
+		// using the first game makes the second the least recently used
+		fen(gameStore, "first");
+		gameStore.add("third", new ChessGame());
+
+		assertEquals(2, gameStore.size());
+		assertNotNull(gameStore.find("first"));
+		assertNull(gameStore.find("second"));
+		assertNotNull(gameStore.find("third"));
+	}
+
+	@Test
+	void reloadsASpilledGameInTheSamePosition() {
+		GameStore gameStore = store(1, Duration.ofMinutes(30), directory.toString());
+		gameStore.add("spilled", new ChessGame());
+		gameStore.call("spilled", session -> session.getChessGame().makeMove("E7", "E5"));
+		gameStore.call("spilled", session -> session.getChessGame().makeMove("E2", "E4"));
+		String before = fen(gameStore, "spilled");
+
+		gameStore.add("other", new ChessGame());
+		assertEquals(1, gameStore.size());
+		assertTrue(Files.exists(directory.resolve("spilled.game")));
+
+		assertEquals(before, fen(gameStore, "spilled"));
+		assertFalse(Files.exists(directory.resolve("spilled.game")));
+		// reloading made room by spilling the other game in turn
+		assertTrue(Files.exists(directory.resolve("other.game")));
+	}
+
+	@Test
+	void keepsGamesThatAreSpilledAgainWhileReloading() throws Exception {
+		// with room for one game, each request for one game spills the other,
+		// so reloads keep racing with evictions of the game just reloaded
+		GameStore gameStore = store(1, Duration.ofMinutes(30), directory.toString());
+		gameStore.add("first", new ChessGame());
+		gameStore.call("first", session -> session.getChessGame().makeMove("E7", "E5"));
+		String first = fen(gameStore, "first");
+		gameStore.add("second", new ChessGame());
+		String second = fen(gameStore, "second");
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> requests = new ArrayList<>();
+			for (int thread = 0; thread < 4; thread++) {
+				String gameId = thread % 2 == 0 ? "first" : "second";
+				String expected = thread % 2 == 0 ? first : second;
+				requests.add(executor.submit(() -> {
+					for (int i = 0; i < 500; i++) {
+						assertEquals(expected, fen(gameStore, gameId));
+					}
+				}));
+			}
+			for (Future<?> request : requests) {
+				request.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(first, fen(gameStore, "first"));
+		assertEquals(second, fen(gameStore, "second"));
+	}
+
+	@Test
+	void evictsIdleGames() throws InterruptedException {
+		GameStore gameStore = store(10, Duration.ofMillis(500), "");
+		gameStore.add("idle", new ChessGame());
+		gameStore.add("used", new ChessGame());
+		Thread.sleep(600);
+		fen(gameStore, "used");
+		gameStore.evictIdleGames();
+
+		assertNull(gameStore.find("idle"));
+		assertNotNull(gameStore.find("used"));
+	}
+
+	@Test
+	void neverEvictsTheDefaultGame() throws InterruptedException {
+		GameStore gameStore = store(1, Duration.ofMillis(1), directory.toString());
+		gameStore.add(GameService.DEFAULT_GAME_ID, new ChessGame());
+		gameStore.add("other", new ChessGame());
+		assertNotNull(gameStore.find(GameService.DEFAULT_GAME_ID));
+
+		Thread.sleep(10);
+		gameStore.evictIdleGames();
+		assertEquals(1, gameStore.size());
+		assertNotNull(gameStore.find(GameService.DEFAULT_GAME_ID));
+		assertFalse(Files.exists(directory.resolve(GameService.DEFAULT_GAME_ID + ".game")));
+	}
+
+}
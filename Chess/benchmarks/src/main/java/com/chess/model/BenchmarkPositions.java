@@ -0,0 +1,64 @@
+package com.chess.model;
+
+// realistic positions the benchmarks run over, written in FEN
+final class BenchmarkPositions {
+    // positions where the side to move is not in check
+    static final String ITALIAN = "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4";
+    static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    static final String CLOSED_MIDDLEGAME = "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10";
+    static final String QUEENS_GAMBIT = "2rq1rk1/pb1nbppp/1p2pn2/2pp4/2PP4/1PNBPN2/PB3PPP/R2QR1K1 w - - 0 11";
+    static final String ROOK_ENDGAME = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+    static final String PAWN_ENDGAME = "8/8/4k3/3p4/3P4/4K3/8/8 w - - 0 1";
+    static final String BACK_RANK_ENDGAME = "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1";
+
+    // positions where the side to move is in check
+    static final String BISHOP_CHECK_WHITE = "rnbqk1nr/pppp1ppp/8/4p3/1b1P4/8/PPP1PPPP/RNBQKBNR w KQkq - 1 3";
+    static final String BISHOP_CHECK_BLACK = "rnbqkbnr/ppp1pppp/8/1B1p4/4P3/8/PPPP1PPP/RNBQK1NR b KQkq - 1 2";
+    static final String ROOK_CHECK_ENDGAME = "8/8/8/3k4/8/8/8/3RK3 b - - 0 1";
+    static final String SCHOLARS_MATE = "r1bqkbnr/pppp1Qpp/2n5/4p3/2B1P3/8/PPPP1PPP/RNB1K1NR b KQkq - 0 4";
+
+    // a position where the side to move has no legal move but is not in check,
+    // and one where white's Qf7 leads to it
+    static final String STALEMATE = "7k/5Q2/6K1/8/8/8/8/8 b - - 0 1";
+    static final String BEFORE_STALEMATE = "7k/8/4Q1K1/8/8/8/8/8 w - - 0 1";
+
+    private BenchmarkPositions() {
+    }
+
+    // looks a position up by the name of its constant
+    static String byName(String name) {
+        try {
+            return (String) BenchmarkPositions.class.getDeclaredField(name).get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unknown benchmark position: " + name, e);
+        }
+    }
+
+    // finds a plain legal move (no castling, en passant or promotion) for the side
+    // to move and writes it in the game's own square names, e.g. {"E7", "E5"}
+    static String[] firstPlainMove(String fen) {
+        BitboardPosition position = new BitboardPosition();
+        Fen.load(fen, position);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(position, moves);
+        BitboardPosition child = new BitboardPosition();
+        for (int i = 0; i < count; i++) {
+            int flags = PackedMove.flags(moves[i]);
+            if (flags != PackedMove.QUIET && flags != PackedMove.CAPTURE && flags != PackedMove.DOUBLE_PAWN_PUSH) {
+                continue;
+            }
+            child.copyFrom(position);
+            child.makeMove(moves[i]);
+            if (!child.isInCheck(position.getSideToMove())) {
+                return new String[] { squareName(PackedMove.from(moves[i])), squareName(PackedMove.to(moves[i])) };
+            }
+        }
+        throw new IllegalArgumentException("No plain legal move in " + fen);
+    }
+
+    // the game names squares with column letters and row numbers starting at 1
+    private static String squareName(int square) {
+        return "" + (char) ('A' + BitboardPosition.colOf(square)) + (char) ('1' + BitboardPosition.rowOf(square));
+    }
+
+} // end BenchmarkPositions
@@ -0,0 +1,203 @@
+package com.chess.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// benchmarks the steps a move request goes through, over a corpus of middlegame
+// and endgame positions. Run with BenchmarkRunner to get allocation rates too
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveValidationBenchmark {
+
+    // a position where the side to move is not in check
+    @State(Scope.Thread)
+    public static class QuietPosition {
+        @Param({ "ITALIAN", "KIWIPETE", "CLOSED_MIDDLEGAME", "QUEENS_GAMBIT", "ROOK_ENDGAME", "PAWN_ENDGAME",
+                "BACK_RANK_ENDGAME" })
+        public String position;
+
+        String fen;
+        String from;
+        String to;
+        ChessGame chessGame;
+        Board board;
+        Player player;
+        Colour sideToMove;
+        int[] moves;
+
+        @Setup(Level.Trial)
+        public void setUpTrial() {
+            fen = BenchmarkPositions.byName(position);
+            String[] move = BenchmarkPositions.firstPlainMove(fen);
+            from = move[0];
+            to = move[1];
+            board = new Board();
+            Fen.load(fen, board.getPosition());
+            sideToMove = board.getSideToMove();
+            player = new Player(sideToMove);
+            moves = new int[MoveGenerator.MAX_MOVES];
+            chessGame = ChessGame.fromFen(fen);
+            Object result = ChessGame.fromFen(fen).makeMove(from, to);
+            if (!(result instanceof Integer) || (Integer) result <= 0) {
+                throw new IllegalStateException("The game rejected " + from + to + " in " + fen + ": " + result);
+            }
+        }
+    }
+
+    // a fresh game per call, for benchmarks that change the game
+    @State(Scope.Thread)
+    public static class FreshGame {
+        ChessGame chessGame;
+
+        @Setup(Level.Invocation)
+        public void setUpInvocation(QuietPosition quiet) {
+            chessGame = ChessGame.fromFen(quiet.fen);
+        }
+    }
+
+    // a position where the side to move is in check, or checkmated
+    @State(Scope.Thread)
+    public static class CheckPosition {
+        @Param({ "BISHOP_CHECK_WHITE", "BISHOP_CHECK_BLACK", "ROOK_CHECK_ENDGAME", "SCHOLARS_MATE" })
+        public String position;
+
+        ChessGame chessGame;
+
+        @Setup(Level.Trial)
+        public void setUpTrial() {
+            chessGame = ChessGame.fromFen(BenchmarkPositions.byName(position));
+        }
+    }
+
+    // a fresh game in check per call, with a move that gets out of it
+    @State(Scope.Thread)
+    public static class CheckedGame {
+        @Param({ "BISHOP_CHECK_WHITE", "BISHOP_CHECK_BLACK", "ROOK_CHECK_ENDGAME" })
+        public String position;
+
+        String fen;
+        String from;
+        String to;
+        ChessGame chessGame;
+
+        @Setup(Level.Trial)
+        public void setUpTrial() {
+            fen = BenchmarkPositions.byName(position);
+            String[] move = BenchmarkPositions.firstPlainMove(fen);
+            from = move[0];
+            to = move[1];
+            Object result = ChessGame.fromFen(fen).makeMove(from, to);
+            if (!(result instanceof Integer) || (Integer) result <= 0) {
+                throw new IllegalStateException("The game rejected " + from + to + " in " + fen + ": " + result);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void setUpInvocation() {
+            chessGame = ChessGame.fromFen(fen);
+        }
+    }
+
+    // a position without a legal move for the side to move, which is not in
+    // check
+    @State(Scope.Thread)
+    public static class StalematePosition {
+        ChessGame chessGame;
+
+        @Setup(Level.Trial)
+        public void setUpTrial() {
+            chessGame = ChessGame.fromFen(BenchmarkPositions.STALEMATE);
+        }
+    }
+
+    // a fresh game per call where Qf7 stalemates black
+    @State(Scope.Thread)
+    public static class StalematingGame {
+        ChessGame chessGame;
+
+        @Setup(Level.Trial)
+        public void setUpTrial() {
+            Object result = ChessGame.fromFen(BenchmarkPositions.BEFORE_STALEMATE).makeMove("E3", "F2");
+            if (!Integer.valueOf(8).equals(result)) {
+                throw new IllegalStateException("Qf7 did not stalemate: " + result);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void setUpInvocation() {
+            chessGame = ChessGame.fromFen(BenchmarkPositions.BEFORE_STALEMATE);
+        }
+    }
+
+    @Benchmark
+    public Object makeMove(QuietPosition quiet, FreshGame game) {
+        return game.chessGame.makeMove(quiet.from, quiet.to);
+    }
+
+    @Benchmark
+    public Move playerGetMove(QuietPosition quiet) {
+        return quiet.player.getMove(quiet.from, quiet.to, quiet.board);
+    }
+
+    @Benchmark
+    public boolean kingInCheck(QuietPosition quiet) {
+        return quiet.chessGame.kingInCheck(quiet.sideToMove);
+    }
+
+    @Benchmark
+    public int generateLegal(QuietPosition quiet) {
+        return MoveGenerator.generateLegal(quiet.board.getPosition(), quiet.moves);
+    }
+
+    // check, checkmate and stalemate are all read from the legal moves the
+    // game finds after every move
+    @Benchmark
+    public ChessGame findLegalMoves(QuietPosition quiet) {
+        quiet.chessGame.findLegalMoves();
+        return quiet.chessGame;
+    }
+
+    @Benchmark
+    public ChessGame findLegalMovesInCheck(CheckPosition check) {
+        check.chessGame.findLegalMoves();
+        return check.chessGame;
+    }
+
+    @Benchmark
+    public ChessGame findLegalMovesInStalemate(StalematePosition stalemate) {
+        stalemate.chessGame.findLegalMoves();
+        return stalemate.chessGame;
+    }
+
+    // a move in check is looked up in the legal moves
+    @Benchmark
+    public Object makeMoveOutOfCheck(CheckedGame checked) {
+        return checked.chessGame.makeMove(checked.from, checked.to);
+    }
+
+    @Benchmark
+    public Object makeStalematingMove(StalematingGame game) {
+        return game.chessGame.makeMove("E3", "F2");
+    }
+
+    @Benchmark
+    public String[][] getBoard(QuietPosition quiet) {
+        return quiet.board.getBoard();
+    }
+
+}